@@ -0,0 +1,98 @@
+package benchmark;
+
+import model.Money;
+import model.Product;
+import service.DataDirectory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Shared fixtures for the benchmarks. The services resolve their file paths
+ * once per JVM, so every fork gets one scratch data directory that each trial
+ * wipes and reseeds before the services are constructed.
+ */
+final class BenchmarkData {
+    static final int CATEGORY_COUNT = 4;
+    static final long SEED = 42L;
+
+    private static final Path DATA_DIR;
+
+    static {
+        try {
+            DATA_DIR = Files.createTempDirectory("supershop-bench");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.setProperty(DataDirectory.PROPERTY, DATA_DIR.toString());
+    }
+
+    private BenchmarkData() {
+    }
+
+    /** Empties the scratch data directory and seeds it with a catalog snapshot. */
+    static List<Product> resetCatalog(int catalogSize, int stockPerProduct) {
+        clearDataDirectory();
+        List<Product> catalog = catalog(catalogSize, stockPerProduct);
+        writeSnapshot(catalog);
+        return catalog;
+    }
+
+    static List<Product> catalog(int catalogSize, int stockPerProduct) {
+        Random random = new Random(SEED);
+        Date added = new Date();
+        List<Product> catalog = new ArrayList<>(catalogSize);
+        for (int id = 1; id <= catalogSize; id++) {
+            int categoryId = 1 + random.nextInt(CATEGORY_COUNT);
+            Money price = Money.ofMinor(100 + random.nextInt(100_000));
+            catalog.add(new Product(id, categoryId, "Product " + id, price, stockPerProduct, added));
+        }
+        return catalog;
+    }
+
+    /** Service methods report through System.out; keep that out of the measurements. */
+    static void silenceConsole() {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(sink);
+        System.setErr(sink);
+    }
+
+    static void clearDataDirectory() {
+        try (Stream<Path> files = Files.walk(DATA_DIR)) {
+            files.sorted(Comparator.reverseOrder())
+                    .filter(path -> !path.equals(DATA_DIR))
+                    .forEach(path -> {
+                        try {
+                            Files.delete(path);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Writing the snapshot directly is far quicker than inserting a million products one by one
+    private static void writeSnapshot(List<Product> catalog) {
+        Path snapshot = Path.of(DataDirectory.resolve("products.dat"));
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(snapshot)))) {
+            out.writeObject(catalog);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
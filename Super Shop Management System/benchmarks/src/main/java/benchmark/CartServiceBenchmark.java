@@ -0,0 +1,53 @@
+package benchmark;
+
+import model.Cart;
+import org.openjdk.jmh.annotations.*;
+import service.CartService;
+import service.ProductService;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartServiceBenchmark {
+    private static final String CART_KEY = "01700000000";
+    private static final int ITEMS_PER_CHECKOUT = 5;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private CartService cartService;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silenceConsole();
+        // Enough stock that checkouts never run a product dry during a run
+        BenchmarkData.resetCatalog(catalogSize, 1_000_000_000);
+        cartService = new CartService(new ProductService());
+        random = new SplittableRandom(BenchmarkData.SEED);
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyCart() {
+        cartService.clearCart(CART_KEY);
+    }
+
+    @Benchmark
+    public void addToCart() {
+        cartService.addToCart(CART_KEY, 1 + random.nextInt(catalogSize), 1);
+    }
+
+    @Benchmark
+    public Cart checkout() {
+        for (int i = 0; i < ITEMS_PER_CHECKOUT; i++) {
+            cartService.addToCart(CART_KEY, 1 + random.nextInt(catalogSize), 1);
+        }
+        return cartService.checkout(CART_KEY, false);
+    }
+}
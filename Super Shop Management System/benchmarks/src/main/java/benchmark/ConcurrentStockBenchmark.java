@@ -0,0 +1,57 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import service.ProductService;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Basket stock adjustments from several tills at once against one shared catalog. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ConcurrentStockBenchmark {
+    private static final int ITEMS_PER_BASKET = 5;
+
+    @State(Scope.Benchmark)
+    public static class Shop {
+        @Param({"10000", "1000000"})
+        public int catalogSize;
+
+        private ProductService productService;
+        private final AtomicInteger tills = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            BenchmarkData.silenceConsole();
+            // Enough stock that baskets never run a product dry during a run
+            BenchmarkData.resetCatalog(catalogSize, 1_000_000_000);
+            productService = new ProductService();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Till {
+        private SplittableRandom random;
+
+        @Setup(Level.Trial)
+        public void setUp(Shop shop) {
+            random = new SplittableRandom(BenchmarkData.SEED + shop.tills.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    public boolean adjustStock(Shop shop, Till till) {
+        Map<Integer, Integer> basket = new HashMap<>();
+        for (int i = 0; i < ITEMS_PER_BASKET; i++) {
+            basket.merge(1 + till.random.nextInt(shop.catalogSize), -1, Integer::sum);
+        }
+        return shop.productService.adjustStock(basket);
+    }
+}
@@ -0,0 +1,73 @@
+package benchmark;
+
+import model.Product;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import util.CsvReader;
+import util.CsvWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Round-trips the whole catalog through the CSV format, as an export/import would. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductCsvBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private List<Product> catalog;
+    private String[] lines;
+    private String document;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = BenchmarkData.catalog(catalogSize, 100);
+        lines = new String[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            lines[i] = catalog.get(i).toCSV();
+        }
+        document = String.join("\n", lines);
+    }
+
+    @Benchmark
+    public void toCsv(Blackhole blackhole) {
+        for (Product product : catalog) {
+            blackhole.consume(product.toCSV());
+        }
+    }
+
+    @Benchmark
+    public void fromCsv(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(Product.fromCSV(line));
+        }
+    }
+
+    @Benchmark
+    public int writeStream() throws IOException {
+        StringBuilder out = new StringBuilder(document.length());
+        try (CsvWriter writer = new CsvWriter(out)) {
+            for (Product product : catalog) {
+                product.writeCsv(writer);
+                writer.endRecord();
+            }
+        }
+        return out.length();
+    }
+
+    @Benchmark
+    public void readStream(Blackhole blackhole) throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader(document))) {
+            while (reader.next()) {
+                blackhole.consume(Product.readCsv(reader));
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import model.Money;
+import model.Product;
+import org.openjdk.jmh.annotations.*;
+import service.ProductService;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private ProductService productService;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silenceConsole();
+        BenchmarkData.resetCatalog(catalogSize, 100);
+        productService = new ProductService();
+        random = new SplittableRandom(BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public Product getProductById() {
+        return productService.getProductById(1 + random.nextInt(catalogSize));
+    }
+
+    @Benchmark
+    public List<Product> getProductsByCategory() {
+        return productService.getProductsByCategory(1 + random.nextInt(BenchmarkData.CATEGORY_COUNT));
+    }
+
+    // A band of roughly 1% of the price range
+    @Benchmark
+    public List<Product> getProductsByPriceRange() {
+        Money min = Money.ofMinor(100 + random.nextInt(99_000));
+        return productService.getProductsByPriceRange(min, min.plus(Money.ofMinor(1_000)));
+    }
+
+    // Ad-hoc threshold, answered by scanning the quantity column
+    @Benchmark
+    public List<Product> getLowStockProductsByThreshold() {
+        return productService.getLowStockProducts(1 + random.nextInt(100));
+    }
+
+    @Benchmark
+    public Money getCategoryStockValue() {
+        return productService.getCategoryStockValue(1 + random.nextInt(BenchmarkData.CATEGORY_COUNT));
+    }
+
+    @Benchmark
+    public List<Product> searchByPrefix() {
+        return productService.searchByPrefix("product " + (1 + random.nextInt(99)), 10);
+    }
+
+    @Benchmark
+    public List<Product> search() {
+        return productService.search("product " + (1 + random.nextInt(catalogSize)), 10);
+    }
+
+    // One transposition away from an existing name
+    @Benchmark
+    public List<Product> searchByNameFuzzy() {
+        return productService.searchByNameFuzzy("prodcut " + (1 + random.nextInt(catalogSize)), 2, 10);
+    }
+}
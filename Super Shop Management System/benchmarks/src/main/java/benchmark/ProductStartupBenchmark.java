@@ -0,0 +1,41 @@
+package benchmark;
+
+import model.Product;
+import org.openjdk.jmh.annotations.*;
+import service.ProductService;
+
+import java.util.concurrent.TimeUnit;
+
+/** Time from constructing the service to the first product lookup, for each product store. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProductStartupBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"journal", "mapped"})
+    public String store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silenceConsole();
+        BenchmarkData.resetCatalog(catalogSize, 100);
+        System.setProperty(ProductService.STORE_PROPERTY, store);
+        // The first start converts the seeded snapshot; only later starts are measured
+        new ProductService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty(ProductService.STORE_PROPERTY);
+    }
+
+    @Benchmark
+    public Product startUp() {
+        return new ProductService().getProductById(catalogSize / 2);
+    }
+}
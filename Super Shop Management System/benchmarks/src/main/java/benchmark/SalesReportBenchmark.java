@@ -0,0 +1,55 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import service.CartService;
+import service.ProductService;
+import service.PurchaseService;
+
+import java.util.Date;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SalesReportBenchmark {
+    private static final int CUSTOMER_COUNT = 100;
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    @Param({"1000", "10000"})
+    public int purchaseCount;
+
+    private PurchaseService purchaseService;
+    private Date from;
+    private Date to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silenceConsole();
+        BenchmarkData.resetCatalog(catalogSize, 1_000_000_000);
+        CartService cartService = new CartService(new ProductService());
+        purchaseService = new PurchaseService(cartService);
+
+        SplittableRandom random = new SplittableRandom(BenchmarkData.SEED);
+        for (int i = 0; i < purchaseCount; i++) {
+            String customer = String.format("017%08d", i % CUSTOMER_COUNT);
+            for (int line = 0; line < 3; line++) {
+                cartService.addToCart(customer, 1 + random.nextInt(catalogSize), 1 + random.nextInt(5));
+            }
+            purchaseService.checkout(customer, i % 10 == 0);
+        }
+
+        to = new Date();
+        from = new Date(to.getTime() - TimeUnit.DAYS.toMillis(30));
+    }
+
+    @Benchmark
+    public void generateSalesReport() {
+        purchaseService.generateSalesReport(from, to);
+    }
+}
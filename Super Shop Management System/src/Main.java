@@ -1,28 +1,41 @@
 
+import model.Money;
 import model.User;
 import model.Product;
+import model.StockAlert;
 import service.AuthService;
 import service.ProductService;
 import service.CartService;
 import service.PurchaseService;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.text.*;
 
 public class Main {
+    private static final int HISTORY_PAGE_SIZE = 10;
+    private static final int SEARCH_RESULT_LIMIT = 10;
+    private static final int FUZZY_MAX_DISTANCE = 2;
+    private static final int PRICE_PAGE_SIZE = 20;
+    private static final Money MIN_PRICE = Money.ofMinor(1);
     private static final Scanner scanner = new Scanner(System.in);
     private static final AuthService authService = new AuthService();
     private static final ProductService productService = new ProductService();
     private static final CartService cartService = new CartService(productService);
     private static final PurchaseService purchaseService = new PurchaseService(cartService);
+    private static final Queue<StockAlert> pendingStockAlerts = new ConcurrentLinkedQueue<>();
     private static User currentUser;
 
     public static void main(String[] args) {
         Runtime.getRuntime().addShutdownHook(new Thread(Main::closeResources));
+        productService.addStockAlertListener(pendingStockAlerts::add);
         displayWelcomeScreen();
         mainMenu();
     }
 
     private static void closeResources() {
+        authService.flush();
         scanner.close();
         System.out.println("\nSystem resources cleaned up");
     }
@@ -129,7 +142,14 @@ public class Main {
         }
     }
     private static void adminDashboard() {
+        int lowStockCount = productService.getLowStockProducts().size();
+        int soldOutCount = productService.getOutOfStockProducts().size();
+        if (lowStockCount > 0 || soldOutCount > 0) {
+            System.out.printf("\n⚠️ %d product(s) low on stock, %d out of stock\n", lowStockCount, soldOutCount);
+        }
+
         while (true) {
+            showStockAlerts();
             System.out.println("\n=== ADMIN DASHBOARD ===");
             System.out.println("1. Product Management");
             System.out.println("2. Sales Reports");
@@ -154,6 +174,19 @@ public class Main {
         }
     }
 
+    // Stock level changes raised since the dashboard was last shown
+    private static void showStockAlerts() {
+        StockAlert alert;
+        boolean first = true;
+        while ((alert = pendingStockAlerts.poll()) != null) {
+            if (first) {
+                System.out.println("\n=== STOCK ALERTS ===");
+                first = false;
+            }
+            System.out.println(alert);
+        }
+    }
+
     private static void userManagementMenu() {
         while (true) {
             System.out.println("\n=== USER MANAGEMENT ===");
@@ -183,10 +216,12 @@ public class Main {
             System.out.println("3. Update Product");
             System.out.println("4. Delete Product");
             System.out.println("5. Check Low Stock");
-            System.out.println("6. Back to Admin Dashboard");
+            System.out.println("6. Import Products from CSV");
+            System.out.println("7. Export Products to CSV");
+            System.out.println("8. Back to Admin Dashboard");
             System.out.print("Enter choice: ");
 
-            int choice = getIntInput(1, 6);
+            int choice = getIntInput(1, 8);
 
             switch (choice) {
                 case 1 -> addProductMenu();
@@ -194,11 +229,41 @@ public class Main {
                 case 3 -> updateProductMenu();
                 case 4 -> deleteProductMenu();
                 case 5 -> checkLowStockMenu();
-                case 6 -> { return; }
+                case 6 -> {
+                    Path file = getPathInput("Enter CSV file to import: ");
+                    if (file != null) {
+                        productService.importCsv(file);
+                    }
+                }
+                case 7 -> {
+                    Path file = getPathInput("Enter CSV file to write: ");
+                    if (file != null) {
+                        int count = productService.exportCsv(file);
+                        if (count >= 0) {
+                            System.out.println("✅ Exported " + count + " products to " + file);
+                        }
+                    }
+                }
+                case 8 -> { return; }
             }
         }
     }
 
+    private static Path getPathInput(String prompt) {
+        System.out.print(prompt);
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            System.out.println("❌ No file given");
+            return null;
+        }
+        try {
+            return Path.of(input);
+        } catch (InvalidPathException e) {
+            System.out.println("❌ Invalid file path: " + e.getMessage());
+            return null;
+        }
+    }
+
     private static void addProductMenu() {
         System.out.println("\n=== ADD NEW PRODUCT ===");
         productService.displayCategories();
@@ -215,7 +280,7 @@ public class Main {
         }
 
         System.out.print("Enter price: ");
-        float price = getFloatInput(0.01f, Float.MAX_VALUE);
+        Money price = getMoneyInput(MIN_PRICE);
 
         System.out.print("Enter initial quantity: ");
         int quantity = getIntInput(0, Integer.MAX_VALUE);
@@ -252,38 +317,45 @@ public class Main {
 
         int choice = getIntInput(1, 5);
 
-        switch (choice) {
-            case 1 -> {
-                System.out.print("Enter new name: ");
-                String newName = scanner.nextLine().trim();
-                if (!newName.isEmpty()) {
-                    product.setName(newName);
-                    System.out.println("✅ Name updated successfully!");
+        // The shown product may already be out of date, so every change goes through the service
+        try {
+            switch (choice) {
+                case 1 -> {
+                    System.out.print("Enter new name: ");
+                    String newName = scanner.nextLine().trim();
+                    if (!newName.isEmpty()) {
+                        printUpdateResult(productService.updateProductDetails(productId, newName, product.getCategoryId()), "Name");
+                    }
                 }
+                case 2 -> {
+                    productService.displayCategories();
+                    System.out.print("Enter new category ID: ");
+                    int newCategoryId = getIntInput(1, Integer.MAX_VALUE);
+                    printUpdateResult(productService.updateProductDetails(productId, product.getName(), newCategoryId), "Category");
+                }
+                case 3 -> {
+                    System.out.print("Enter new price: ");
+                    Money newPrice = getMoneyInput(MIN_PRICE);
+                    printUpdateResult(productService.updateProductPrice(productId, newPrice), "Price");
+                }
+                case 4 -> {
+                    System.out.print("Enter quantity to add (negative to remove): ");
+                    int quantityChange = getIntInput(-product.getQuantity(), Integer.MAX_VALUE - product.getQuantity());
+                    printUpdateResult(productService.updateProductQuantity(productId, quantityChange), "Quantity");
+                }
+                case 5 -> { return; }
             }
-            case 2 -> {
-                productService.displayCategories();
-                System.out.print("Enter new category ID: ");
-                int newCategoryId = getIntInput(1, Integer.MAX_VALUE);
-                product.setCategoryId(newCategoryId);
-                System.out.println("✅ Category updated successfully!");
-            }
-            case 3 -> {
-                System.out.print("Enter new price: ");
-                float newPrice = getFloatInput(0.01f, Float.MAX_VALUE);
-                product.setPrice(newPrice);
-                System.out.println("✅ Price updated successfully!");
-            }
-            case 4 -> {
-                System.out.print("Enter new quantity: ");
-                int newQuantity = getIntInput(0, Integer.MAX_VALUE);
-                product.setQuantity(newQuantity);
-                System.out.println("✅ Quantity updated successfully!");
-            }
-            case 5 -> { return; }
+        } catch (IllegalArgumentException e) {
+            System.out.println("❌ " + e.getMessage());
         }
+    }
 
-        productService.updateProduct(product);
+    private static void printUpdateResult(boolean updated, String field) {
+        if (updated) {
+            System.out.println("✅ " + field + " updated successfully!");
+        } else {
+            System.out.println("❌ Failed to update " + field.toLowerCase());
+        }
     }
 
     private static void deleteProductMenu() {
@@ -305,9 +377,49 @@ public class Main {
     }
 
     private static void checkLowStockMenu() {
-        System.out.print("\nEnter low stock threshold: ");
-        int threshold = getIntInput(1, Integer.MAX_VALUE);
-        productService.displayLowStockWarning(threshold);
+        while (true) {
+            System.out.println("\n=== LOW STOCK ===");
+            System.out.println("1. View Low Stock Items");
+            System.out.println("2. Set Default Threshold (currently " + productService.getLowStockThreshold() + ")");
+            System.out.println("3. Set Product Threshold");
+            System.out.println("4. Clear Product Threshold");
+            System.out.println("5. Back to Product Management");
+            System.out.print("Enter choice: ");
+
+            int choice = getIntInput(1, 5);
+
+            switch (choice) {
+                case 1 -> productService.displayLowStockWarning();
+                case 2 -> {
+                    System.out.print("Enter new default threshold: ");
+                    int threshold = getIntInput(0, Integer.MAX_VALUE);
+                    if (productService.setLowStockThreshold(threshold)) {
+                        System.out.println("✅ Default threshold updated!");
+                    }
+                }
+                case 3 -> {
+                    System.out.print("Enter product ID: ");
+                    int productId = getIntInput(1, Integer.MAX_VALUE);
+                    System.out.print("Enter threshold for this product: ");
+                    int threshold = getIntInput(0, Integer.MAX_VALUE);
+                    if (productService.setLowStockThreshold(productId, threshold)) {
+                        System.out.println("✅ Product threshold updated!");
+                    } else {
+                        System.out.println("❌ Product not found");
+                    }
+                }
+                case 4 -> {
+                    System.out.print("Enter product ID: ");
+                    int productId = getIntInput(1, Integer.MAX_VALUE);
+                    if (productService.clearLowStockThreshold(productId)) {
+                        System.out.println("✅ Product now uses the default threshold");
+                    } else {
+                        System.out.println("❌ Product not found");
+                    }
+                }
+                case 5 -> { return; }
+            }
+        }
     }
 
     private static void salesReportMenu() {
@@ -406,7 +518,7 @@ public class Main {
             switch (choice) {
                 case 1 -> browseProductsMenu();
                 case 2 -> cartMenu();
-                case 3 -> purchaseService.viewPurchaseHistory(currentUser.getMobile());
+                case 3 -> purchaseHistoryMenu();
                 case 4 -> profileMenu();
                 case 5 -> {
                     currentUser = null;
@@ -416,6 +528,17 @@ public class Main {
         }
     }
 
+    private static void purchaseHistoryMenu() {
+        int cursor = purchaseService.viewPurchaseHistory(currentUser.getMobile(), PurchaseService.NEWEST_PURCHASES, HISTORY_PAGE_SIZE);
+        while (cursor >= 0) {
+            System.out.print("\nShow older purchases? (Y/N): ");
+            if (!scanner.nextLine().equalsIgnoreCase("Y")) {
+                return;
+            }
+            cursor = purchaseService.viewPurchaseHistory(currentUser.getMobile(), cursor, HISTORY_PAGE_SIZE);
+        }
+    }
+
     private static void browseProductsMenu() {
         while (true) {
             System.out.println("\n=== BROWSE PRODUCTS ===");
@@ -423,18 +546,30 @@ public class Main {
             System.out.println("2. Search by Name");
             System.out.println("3. Search by Category");
             System.out.println("4. Search by Price Range");
-            System.out.println("5. Back to Customer Dashboard");
+            System.out.println("5. Keyword Search");
+            System.out.println("6. Back to Customer Dashboard");
             System.out.print("Enter choice: ");
 
-            int choice = getIntInput(1, 5);
+            int choice = getIntInput(1, 6);
 
             switch (choice) {
                 case 1 -> productService.displayAllProducts();
                 case 2 -> {
-                    System.out.print("Enter product name: ");
+                    System.out.print("Enter product name (or the start of it): ");
                     String name = scanner.nextLine();
                     Product product = productService.getProductByName(name);
-                    displayProductDetails(product);
+                    if (product != null) {
+                        displayProductDetails(product);
+                    } else {
+                        List<Product> matches = productService.searchByPrefix(name, SEARCH_RESULT_LIMIT);
+                        if (matches.isEmpty()) {
+                            matches = productService.searchByNameFuzzy(name, FUZZY_MAX_DISTANCE, SEARCH_RESULT_LIMIT);
+                            if (!matches.isEmpty()) {
+                                System.out.println("No exact match. Did you mean:");
+                            }
+                        }
+                        displayProductList(matches);
+                    }
                 }
                 case 3 -> {
                     productService.displayCategories();
@@ -445,13 +580,33 @@ public class Main {
                 }
                 case 4 -> {
                     System.out.print("Enter minimum price: ");
-                    float min = getFloatInput(0, Float.MAX_VALUE);
+                    Money min = getMoneyInput(Money.ZERO);
                     System.out.print("Enter maximum price: ");
-                    float max = getFloatInput(min, Float.MAX_VALUE);
-                    List<Product> products = productService.getProductsByPriceRange(min, max);
-                    displayProductList(products);
+                    Money max = getMoneyInput(min);
+                    priceRangeMenu(min, max);
                 }
-                case 5 -> { return; }
+                case 5 -> {
+                    System.out.print("Enter keywords (e.g. usb cable): ");
+                    String query = scanner.nextLine();
+                    displayProductList(productService.search(query, SEARCH_RESULT_LIMIT));
+                }
+                case 6 -> { return; }
+            }
+        }
+    }
+
+    private static void priceRangeMenu(Money min, Money max) {
+        int total = productService.countProductsByPriceRange(min, max);
+        int offset = 0;
+        while (true) {
+            displayProductList(productService.getProductsByPriceRange(min, max, offset, PRICE_PAGE_SIZE));
+            offset += PRICE_PAGE_SIZE;
+            if (offset >= total) {
+                return;
+            }
+            System.out.printf("\nShowing %d of %d. Show more? (Y/N): ", offset, total);
+            if (!scanner.nextLine().equalsIgnoreCase("Y")) {
+                return;
             }
         }
     }
@@ -470,7 +625,7 @@ public class Main {
             int choice = getIntInput(1, 6);
 
             switch (choice) {
-                case 1 -> cartService.viewCart();
+                case 1 -> cartService.viewCart(currentUser.getMobile());
                 case 2 -> addToCartMenu();
                 case 3 -> updateCartItemMenu();
                 case 4 -> removeCartItemMenu();
@@ -491,15 +646,21 @@ public class Main {
             return;
         }
 
+        int available = productService.getAvailableQuantity(productId);
+        if (available == 0) {
+            System.out.println("❌ Out of stock");
+            return;
+        }
+
         System.out.print("Enter quantity: ");
-        int quantity = getIntInput(1, product.getQuantity());
+        int quantity = getIntInput(1, available);
 
-        cartService.addToCart(productId, quantity);
+        cartService.addToCart(currentUser.getMobile(), productId, quantity);
     }
 
     private static void updateCartItemMenu() {
-        cartService.viewCart();
-        if (cartService.isEmpty()) return;
+        cartService.viewCart(currentUser.getMobile());
+        if (cartService.isEmpty(currentUser.getMobile())) return;
 
         System.out.print("Enter product ID to update: ");
         int productId = getIntInput(1, Integer.MAX_VALUE);
@@ -511,14 +672,14 @@ public class Main {
         }
 
         System.out.print("Enter new quantity: ");
-        int quantity = getIntInput(0, product.getQuantity());
+        int quantity = getIntInput(0, productService.getAvailableQuantity(productId, currentUser.getMobile()));
 
-        cartService.updateCartItem(productId, quantity);
+        cartService.updateCartItem(currentUser.getMobile(), productId, quantity);
     }
 
     private static void removeCartItemMenu() {
-        cartService.viewCart();
-        if (cartService.isEmpty()) return;
+        cartService.viewCart(currentUser.getMobile());
+        if (cartService.isEmpty(currentUser.getMobile())) return;
 
         System.out.print("Enter product ID to remove: ");
         int productId = getIntInput(1, Integer.MAX_VALUE);
@@ -526,17 +687,17 @@ public class Main {
         System.out.print("Are you sure? (Y/N): ");
         String confirm = scanner.nextLine();
         if (confirm.equalsIgnoreCase("Y")) {
-            cartService.removeCartItem(productId);
+            cartService.removeCartItem(currentUser.getMobile(), productId);
         }
     }
 
     private static void checkoutMenu() {
-        if (cartService.isEmpty()) {
+        if (cartService.isEmpty(currentUser.getMobile())) {
             System.out.println("❌ Your cart is empty.");
             return;
         }
 
-        cartService.viewCart();
+        cartService.viewCart(currentUser.getMobile());
         System.out.print("Confirm checkout? (Y/N): ");
         String confirm = scanner.nextLine();
 
@@ -634,7 +795,7 @@ public class Main {
         System.out.println("ID: " + product.getId());
         System.out.println("Name: " + product.getName());
         System.out.println("Category: " + productService.getCategoryName(product.getCategoryId()));
-        System.out.printf("Price: $%.2f\n", product.getPrice());
+        System.out.println("Price: " + product.getFormattedPrice());
         System.out.println("Quantity: " + product.getQuantity());
         System.out.println("Status: " + (product.isInStock() ? "In Stock" : "Out of Stock"));
     }
@@ -649,11 +810,11 @@ public class Main {
         System.out.printf("%-5s %-20s %-15s %-10s %-8s\n", "ID", "Name", "Category", "Price", "Qty");
         System.out.println("------------------------------------------------");
         for (Product p : products) {
-            System.out.printf("%-5d %-20s %-15s $%-9.2f %-8d\n",
+            System.out.printf("%-5d %-20s %-15s %-10s %-8d\n",
                     p.getId(),
                     p.getName(),
                     productService.getCategoryName(p.getCategoryId()),
-                    p.getPrice(),
+                    p.getFormattedPrice(),
                     p.getQuantity());
         }
     }
@@ -720,16 +881,16 @@ public class Main {
         }
     }
 
-    private static float getFloatInput(float min, float max) {
+    private static Money getMoneyInput(Money min) {
         while (true) {
             try {
-                float input = Float.parseFloat(scanner.nextLine());
-                if (input >= min && input <= max) {
+                Money input = Money.parse(scanner.nextLine());
+                if (input.compareTo(min) >= 0) {
                     return input;
                 }
-                System.out.printf("❌ Please enter a number between %.2f and %.2f: ", min, max);
-            } catch (NumberFormatException e) {
-                System.out.print("❌ Please enter a valid number: ");
+                System.out.printf("❌ Please enter an amount of at least %s: ", min);
+            } catch (IllegalArgumentException e) {
+                System.out.print("❌ Please enter a valid amount: ");
             }
         }
     }
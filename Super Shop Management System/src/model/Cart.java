@@ -0,0 +1,94 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+public class Cart {
+    private final String ownerKey;
+    private final List<CartItem> items;
+    private int discountPercent;
+
+    public Cart(String ownerKey) {
+        this(ownerKey, new ArrayList<>());
+    }
+
+    public Cart(String ownerKey, List<CartItem> items) {
+        if (ownerKey == null || ownerKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("Cart owner cannot be null or empty");
+        }
+        this.ownerKey = ownerKey.trim();
+        this.items = new ArrayList<>(items);
+    }
+
+    public String getOwnerKey() {
+        return ownerKey;
+    }
+
+    public List<CartItem> getItems() {
+        return new ArrayList<>(items);
+    }
+
+    public int getDiscountPercent() {
+        return discountPercent;
+    }
+
+    public void setDiscountPercent(int discountPercent) {
+        if (discountPercent < 0 || discountPercent >= 100) {
+            throw new IllegalArgumentException("Discount must be between 0 and 99 percent");
+        }
+        this.discountPercent = discountPercent;
+    }
+
+    public Optional<CartItem> findItem(int productId) {
+        return items.stream()
+                .filter(item -> item.getProductId() == productId)
+                .findFirst();
+    }
+
+    public void addItem(CartItem item) {
+        if (item == null) {
+            throw new IllegalArgumentException("Cart item cannot be null");
+        }
+        items.add(item);
+    }
+
+    public boolean removeItem(int productId) {
+        return items.removeIf(item -> item.getProductId() == productId);
+    }
+
+    public void clear() {
+        items.clear();
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public Money getSubtotal() {
+        long subtotal = 0;
+        for (CartItem item : items) {
+            subtotal = Math.addExact(subtotal, item.getSubtotalMinor());
+        }
+        return Money.ofMinor(subtotal);
+    }
+
+    public Money getDiscount() {
+        return getSubtotal().percent(discountPercent);
+    }
+
+    public Money getTotal() {
+        Money subtotal = getSubtotal();
+        return subtotal.minus(subtotal.percent(discountPercent));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cart[Owner: %s, Items: %d, Subtotal: %s]",
+                ownerKey, items.size(), getSubtotal());
+    }
+}
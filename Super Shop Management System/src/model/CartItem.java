@@ -1,23 +1,31 @@
 package model;
 
+import util.BinaryReader;
+import util.BinaryWriter;
+import util.CsvReader;
+import util.CsvWriter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 public class CartItem implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private final int productId;
+    // Not final: readObject assigns it when reading carts that stored the price as a float
+    private int productId;
     private String name;
-    private float price;
+    private long priceMinor;
     private int quantity;
 
-    public CartItem(int productId, String name, float price, int quantity) {
+    public CartItem(int productId, String name, Money price, int quantity) {
         if (productId <= 0) {
             throw new IllegalArgumentException("Product ID must be positive");
         }
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Product name cannot be null or empty");
         }
-        if (price <= 0) {
+        if (price == null || !price.isPositive()) {
             throw new IllegalArgumentException("Price must be positive");
         }
         if (quantity <= 0) {
@@ -26,7 +34,7 @@ public class CartItem implements Serializable {
 
         this.productId = productId;
         this.name = name.trim();
-        this.price = price;
+        this.priceMinor = price.getMinorUnits();
         this.quantity = quantity;
     }
 
@@ -39,8 +47,8 @@ public class CartItem implements Serializable {
         return name;
     }
 
-    public float getPrice() {
-        return price;
+    public Money getPrice() {
+        return Money.ofMinor(priceMinor);
     }
 
     public int getQuantity() {
@@ -54,11 +62,11 @@ public class CartItem implements Serializable {
         this.name = name.trim();
     }
 
-    public void setPrice(float price) {
-        if (price <= 0) {
+    public void setPrice(Money price) {
+        if (price == null || !price.isPositive()) {
             throw new IllegalArgumentException("Price must be positive");
         }
-        this.price = price;
+        this.priceMinor = price.getMinorUnits();
     }
 
     public void setQuantity(int quantity) {
@@ -69,25 +77,26 @@ public class CartItem implements Serializable {
     }
 
     public String toCSV() {
-        return String.format("%d,%s,%.2f,%d",
-                productId,
-                name.replace(",", "\\,"),
-                price,
-                quantity);
+        StringBuilder line = new StringBuilder(48);
+        new CsvWriter(line)
+                .field(productId)
+                .field(name)
+                .field(getPrice().toString())
+                .field(quantity);
+        return line.toString();
     }
 
     public static CartItem fromCSV(String csvLine) {
         try {
-            // Handle escaped commas in name
-            String[] parts = csvLine.split("(?<!\\\\),");
+            String[] parts = CsvReader.parseLine(csvLine);
             if (parts.length != 4) {
                 throw new IllegalArgumentException("Invalid CSV format for CartItem");
             }
 
-            int productId = Integer.parseInt(parts[0]);
-            String name = parts[1].replace("\\,", ",");  // Unescape commas
-            float price = Float.parseFloat(parts[2]);
-            int quantity = Integer.parseInt(parts[3]);
+            int productId = Integer.parseInt(parts[0].trim());
+            String name = parts[1];
+            Money price = Money.parse(parts[2]);
+            int quantity = Integer.parseInt(parts[3].trim());
 
             return new CartItem(productId, name, price, quantity);
         } catch (Exception e) {
@@ -96,8 +105,27 @@ public class CartItem implements Serializable {
         }
     }
 
-    public float getSubtotal() {
-        return price * quantity;
+    public void writeBinary(BinaryWriter out) throws IOException {
+        out.writeVarInt(productId);
+        out.writeString(name);
+        out.writeVarLong(priceMinor);
+        out.writeVarInt(quantity);
+    }
+
+    public static CartItem readBinary(BinaryReader in) throws IOException {
+        try {
+            return new CartItem(in.readVarInt(), in.readString(), Money.ofMinor(in.readVarLong()), in.readVarInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid cart item record: " + e.getMessage(), e);
+        }
+    }
+
+    public Money getSubtotal() {
+        return Money.ofMinor(getSubtotalMinor());
+    }
+
+    public long getSubtotalMinor() {
+        return Math.multiplyExact(priceMinor, quantity);
     }
 
     public void increaseQuantity(int amount) {
@@ -119,8 +147,8 @@ public class CartItem implements Serializable {
 
     @Override
     public String toString() {
-        return String.format("CartItem[ID: %d, Name: %s, Price: %.2f, Qty: %d, Subtotal: %.2f]",
-                productId, name, price, quantity, getSubtotal());
+        return String.format("CartItem[ID: %d, Name: %s, Price: %s, Qty: %d, Subtotal: %s]",
+                productId, name, getPrice(), quantity, getSubtotal());
     }
 
     @Override
@@ -135,4 +163,15 @@ public class CartItem implements Serializable {
     public int hashCode() {
         return productId;
     }
+
+    // Carts saved before prices were fixed-point carry a float field named "price"
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        productId = fields.get("productId", 0);
+        name = (String) fields.get("name", null);
+        priceMinor = fields.defaulted("priceMinor")
+                ? Money.of(fields.get("price", 0f)).getMinorUnits()
+                : fields.get("priceMinor", 0L);
+        quantity = fields.get("quantity", 0);
+    }
 }
\ No newline at end of file
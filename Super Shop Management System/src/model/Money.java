@@ -0,0 +1,157 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * An amount of money held as a whole number of minor units (cents, paisa).
+ * Sums and products are exact long arithmetic; rounding only happens where a
+ * percentage is applied or a decimal with more than two places is parsed, and
+ * then it is half-up to the nearest minor unit.
+ */
+public final class Money implements Comparable<Money>, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int DECIMALS = 2;
+    private static final long MINOR_PER_MAJOR = 100;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /** Converts a legacy floating point amount, rounding to the nearest minor unit. */
+    public static Money of(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+        return ofMinor(Math.round(amount * MINOR_PER_MAJOR));
+    }
+
+    /**
+     * Parses a plain decimal such as {@code 12}, {@code 12.5} or {@code -0.05}.
+     * Digits past the second decimal place are rounded half-up.
+     */
+    public static Money parse(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        String value = text.trim();
+        int i = 0;
+        boolean negative = false;
+        if (i < value.length() && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+
+        try {
+            long whole = 0;
+            int wholeDigits = 0;
+            for (; i < value.length() && isAsciiDigit(value.charAt(i)); i++, wholeDigits++) {
+                whole = Math.addExact(Math.multiplyExact(whole, 10), value.charAt(i) - '0');
+            }
+
+            long fraction = 0;
+            int fractionDigits = 0;
+            boolean roundUp = false;
+            if (i < value.length() && value.charAt(i) == '.') {
+                for (i++; i < value.length() && isAsciiDigit(value.charAt(i)); i++, fractionDigits++) {
+                    if (fractionDigits < DECIMALS) {
+                        fraction = fraction * 10 + (value.charAt(i) - '0');
+                    } else if (fractionDigits == DECIMALS) {
+                        roundUp = value.charAt(i) >= '5';
+                    }
+                }
+            }
+            if (i != value.length() || wholeDigits + fractionDigits == 0) {
+                throw new IllegalArgumentException("Invalid amount: " + text);
+            }
+            for (int d = fractionDigits; d < DECIMALS; d++) {
+                fraction *= 10;
+            }
+
+            long minor = Math.addExact(Math.multiplyExact(whole, MINOR_PER_MAJOR), fraction + (roundUp ? 1 : 0));
+            return ofMinor(negative ? -minor : minor);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + text);
+        }
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money times(int quantity) {
+        return ofMinor(Math.multiplyExact(minorUnits, quantity));
+    }
+
+    /** {@code percent}% of this amount, rounded half-up to the nearest minor unit. */
+    public Money percent(int percent) {
+        long scaled = Math.multiplyExact(minorUnits, percent);
+        return ofMinor(Math.floorDiv(scaled + 50, 100));
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    /** The amount with the currency sign, e.g. {@code $12.50} or {@code -$0.50}. */
+    public String format() {
+        return minorUnits < 0 ? "-$" + negate() : "$" + this;
+    }
+
+    private Money negate() {
+        return ofMinor(Math.negateExact(minorUnits));
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        return minorUnits == ((Money) obj).minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    /** Plain decimal with two places, e.g. {@code 12.50}; the inverse of {@link #parse}. */
+    @Override
+    public String toString() {
+        long major = minorUnits / MINOR_PER_MAJOR;
+        long minor = Math.abs(minorUnits % MINOR_PER_MAJOR);
+        StringBuilder sb = new StringBuilder(24);
+        if (minorUnits < 0 && major == 0) sb.append('-');
+        sb.append(major).append('.');
+        if (minor < 10) sb.append('0');
+        return sb.append(minor).toString();
+    }
+
+    // Character.isDigit also accepts other scripts' digits, which c - '0' would misread
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,36 +1,50 @@
 package model;
 
+import util.BinaryReader;
+import util.BinaryWriter;
+import util.CsvReader;
+import util.CsvWriter;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.StringReader;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class Product implements Serializable {
     private static final long serialVersionUID = 1L;
-    private final int id;
+    private static final AtomicIntegerFieldUpdater<Product> QUANTITY =
+            AtomicIntegerFieldUpdater.newUpdater(Product.class, "quantity");
+    // Not final: readObject assigns them when reading snapshots that stored the price as a float
+    private int id;
     private int categoryId;
     private String name;
-    private float price;
-    private int quantity;
-    private final Date dateAdded;
-    private boolean inStock;
+    private long priceMinor;
+    // Changed only by compare-and-set, so concurrent sales of one product cannot take it below zero
+    private volatile int quantity;
+    private Date dateAdded;
+    private transient ProductChangeListener changeListener;
 
-    public Product(int id, int categoryId, String name, float price, int quantity, Date dateAdded) {
+    public Product(int id, int categoryId, String name, Money price, int quantity, Date dateAdded) {
         validateInputs(id, categoryId, name, price, quantity);
 
         this.id = id;
         this.categoryId = categoryId;
         this.name = name.trim();
-        this.price = price;
+        this.priceMinor = price.getMinorUnits();
         this.quantity = quantity;
         this.dateAdded = new Date(dateAdded.getTime());
-        this.inStock = quantity > 0;
     }
 
-    public Product(int id, int categoryId, String name, float price, int quantity) {
+    public Product(int id, int categoryId, String name, Money price, int quantity) {
         this(id, categoryId, name, price, quantity, new Date());
     }
 
-    private void validateInputs(int id, int categoryId, String name, float price, int quantity) {
+    private void validateInputs(int id, int categoryId, String name, Money price, int quantity) {
         if (id <= 0) {
             throw new IllegalArgumentException("Product ID must be positive");
         }
@@ -40,7 +54,7 @@ public class Product implements Serializable {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Product name cannot be null or empty");
         }
-        if (price <= 0) {
+        if (price == null || !price.isPositive()) {
             throw new IllegalArgumentException("Price must be positive");
         }
         if (quantity < 0) {
@@ -68,8 +82,13 @@ public class Product implements Serializable {
         return name;
     }
 
-    public float getPrice() {
-        return price;
+    public Money getPrice() {
+        return Money.ofMinor(priceMinor);
+    }
+
+    /** The price in minor units, for indexes and totals that should not allocate. */
+    public long getPriceMinor() {
+        return priceMinor;
     }
 
     public int getQuantity() {
@@ -85,11 +104,11 @@ public class Product implements Serializable {
     }
 
     public boolean isInStock() {
-        return inStock;
+        return quantity > 0;
     }
 
     public boolean isAvailable() {
-        return inStock; // Alias for isInStock()
+        return isInStock(); // Alias for isInStock()
     }
 
     public void setName(String name) {
@@ -99,99 +118,159 @@ public class Product implements Serializable {
         this.name = name.trim();
     }
 
-    public void setPrice(float price) {
-        if (price <= 0) {
+    public void setPrice(Money price) {
+        if (price == null || !price.isPositive()) {
             throw new IllegalArgumentException("Price must be positive");
         }
-        this.price = price;
+        long oldPriceMinor = this.priceMinor;
+        this.priceMinor = price.getMinorUnits();
+        if (changeListener != null && oldPriceMinor != priceMinor) {
+            changeListener.priceChanged(this, Money.ofMinor(oldPriceMinor));
+        }
     }
 
     public void setQuantity(int quantity) {
         if (quantity < 0) {
             throw new IllegalArgumentException("Quantity cannot be negative");
         }
-        this.quantity = quantity;
-        this.inStock = quantity > 0;
+        int oldQuantity = QUANTITY.getAndSet(this, quantity);
+        if (oldQuantity != quantity) {
+            quantityChanged(oldQuantity, quantity);
+        }
     }
 
     public void setCategoryId(int categoryId) {
         if (categoryId <= 0) {
             throw new IllegalArgumentException("Category ID must be positive");
         }
+        int oldCategoryId = this.categoryId;
         this.categoryId = categoryId;
+        if (changeListener != null && oldCategoryId != categoryId) {
+            changeListener.categoryChanged(this, oldCategoryId);
+        }
+    }
+
+    public void setChangeListener(ProductChangeListener changeListener) {
+        this.changeListener = changeListener;
     }
 
     public void increaseQuantity(int amount) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Increase amount must be positive");
         }
-        this.quantity += amount;
-        this.inStock = true;
+        int oldQuantity;
+        do {
+            oldQuantity = quantity;
+            if (oldQuantity > Integer.MAX_VALUE - amount) {
+                throw new IllegalArgumentException("Quantity too large");
+            }
+        } while (!QUANTITY.compareAndSet(this, oldQuantity, oldQuantity + amount));
+        quantityChanged(oldQuantity, oldQuantity + amount);
     }
 
     public void decreaseQuantity(int amount) {
+        if (!tryDecreaseQuantity(amount)) {
+            throw new IllegalArgumentException("Insufficient quantity available");
+        }
+    }
+
+    /**
+     * Takes {@code amount} off the quantity in one atomic step if that many are
+     * left. Two threads selling the last unit cannot both succeed.
+     *
+     * @return false, changing nothing, if fewer than {@code amount} are left
+     */
+    public boolean tryDecreaseQuantity(int amount) {
         if (amount <= 0) {
             throw new IllegalArgumentException("Decrease amount must be positive");
         }
-        if (this.quantity < amount) {
-            throw new IllegalArgumentException("Insufficient quantity available");
+        int oldQuantity;
+        do {
+            oldQuantity = quantity;
+            if (oldQuantity < amount) return false;
+        } while (!QUANTITY.compareAndSet(this, oldQuantity, oldQuantity - amount));
+        quantityChanged(oldQuantity, oldQuantity - amount);
+        return true;
+    }
+
+    // Passes on the value this thread swapped in: by the time the listener runs, another change may have followed
+    private void quantityChanged(int oldQuantity, int newQuantity) {
+        ProductChangeListener listener = changeListener;
+        if (listener != null) {
+            listener.quantityChanged(this, oldQuantity, newQuantity);
         }
-        this.quantity -= amount;
-        this.inStock = this.quantity > 0;
     }
 
     public String toCSV() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        return String.join(",",
-                String.valueOf(id),
-                String.valueOf(categoryId),
-                escapeSpecialCharacters(name),
-                String.format("%.2f", price),
-                String.valueOf(quantity),
-                sdf.format(dateAdded)
-        );
+        StringBuilder line = new StringBuilder(64);
+        writeCsv(new CsvWriter(line));
+        return line.toString();
+    }
+
+    /** Writes the fields of one record: id, category, name, price, quantity, date added. */
+    public void writeCsv(CsvWriter writer) {
+        writer.field(id)
+                .field(categoryId)
+                .field(name)
+                .field(getPrice().toString())
+                .field(quantity)
+                .field(LocalDate.ofInstant(dateAdded.toInstant(), ZoneId.systemDefault()).toString());
     }
 
     public static Product fromCSV(String csvLine) {
+        try (CsvReader reader = new CsvReader(new StringReader(csvLine))) {
+            if (!reader.next()) {
+                throw new IllegalArgumentException("Invalid CSV format for Product");
+            }
+            return readCsv(reader);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Error parsing Product from CSV: " + e.getMessage(), e);
+        }
+    }
+
+    /** Builds a product from the reader's current record, as written by {@link #writeCsv}. */
+    public static Product readCsv(CsvReader reader) {
         try {
-            String[] parts = csvLine.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-            if (parts.length != 6) {
+            if (reader.fieldCount() != 6) {
                 throw new IllegalArgumentException("Invalid CSV format for Product");
             }
 
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+            LocalDate dateAdded = LocalDate.parse(reader.field(5).trim());
             return new Product(
-                    Integer.parseInt(parts[0]),
-                    Integer.parseInt(parts[1]),
-                    unescapeSpecialCharacters(parts[2]),
-                    Float.parseFloat(parts[3]),
-                    Integer.parseInt(parts[4]),
-                    sdf.parse(parts[5])
+                    reader.intField(0),
+                    reader.intField(1),
+                    reader.field(2),
+                    Money.parse(reader.field(3)),
+                    reader.intField(4),
+                    Date.from(dateAdded.atStartOfDay(ZoneId.systemDefault()).toInstant())
             );
         } catch (Exception e) {
             throw new IllegalArgumentException("Error parsing Product from CSV: " + e.getMessage(), e);
         }
     }
 
-    private static String escapeSpecialCharacters(String data) {
-        String escapedData = data.replace("\\", "\\\\");
-        escapedData = escapedData.replace("\"", "\\\"");
-        escapedData = escapedData.replace(",", "\\,");
-        return "\"" + escapedData + "\"";
+    public void writeBinary(BinaryWriter out) throws IOException {
+        out.writeVarInt(id);
+        out.writeVarInt(categoryId);
+        out.writeString(name);
+        out.writeVarLong(priceMinor);
+        out.writeVarInt(quantity);
+        out.writeVarLong(dateAdded.getTime());
     }
 
-    private static String unescapeSpecialCharacters(String data) {
-        if (data.startsWith("\"") && data.endsWith("\"")) {
-            data = data.substring(1, data.length() - 1);
+    public static Product readBinary(BinaryReader in) throws IOException {
+        try {
+            return new Product(in.readVarInt(), in.readVarInt(), in.readString(),
+                    Money.ofMinor(in.readVarLong()), in.readVarInt(), new Date(in.readVarLong()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid product record: " + e.getMessage(), e);
         }
-        return data.replace("\\,", ",")
-                .replace("\\\"", "\"")
-                .replace("\\\\", "\\");
     }
 
     @Override
     public String toString() {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        int quantity = this.quantity;
         return String.format("Product [ID: %d, Category: %d, Name: %s, Price: %s, Qty: %d, Added: %s, Status: %s]",
                 id,
                 categoryId,
@@ -199,7 +278,7 @@ public class Product implements Serializable {
                 getFormattedPrice(),
                 quantity,
                 sdf.format(dateAdded),
-                inStock ? "In Stock" : "Out of Stock");
+                quantity > 0 ? "In Stock" : "Out of Stock");
     }
 
     @Override
@@ -219,14 +298,28 @@ public class Product implements Serializable {
         if (threshold < 0) {
             throw new IllegalArgumentException("Stock threshold cannot be negative");
         }
-        return inStock && quantity <= threshold;
+        int quantity = this.quantity;
+        return quantity > 0 && quantity <= threshold;
     }
 
     public String getFormattedPrice() {
-        return String.format("$%.2f", price);
+        return getPrice().format();
     }
 
     public String getFormattedDateAdded() {
         return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(dateAdded);
     }
-}
\ No newline at end of file
+
+    // Snapshots written before prices were fixed-point carry a float field named "price"
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        categoryId = fields.get("categoryId", 0);
+        name = (String) fields.get("name", null);
+        priceMinor = fields.defaulted("priceMinor")
+                ? Money.of(fields.get("price", 0f)).getMinorUnits()
+                : fields.get("priceMinor", 0L);
+        quantity = fields.get("quantity", 0);
+        dateAdded = (Date) fields.get("dateAdded", null);
+    }
+}
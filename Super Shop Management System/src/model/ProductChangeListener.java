@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * Notified after a product's indexed fields change, so whatever keeps the
+ * product in a lookup structure can move it. Only called when the value
+ * actually changed.
+ */
+public interface ProductChangeListener {
+    default void categoryChanged(Product product, int oldCategoryId) {
+    }
+
+    /** {@code newQuantity} is the value the change wrote, which a later change may already have replaced. */
+    default void quantityChanged(Product product, int oldQuantity, int newQuantity) {
+    }
+
+    default void priceChanged(Product product, Money oldPrice) {
+    }
+}
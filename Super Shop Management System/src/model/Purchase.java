@@ -1,5 +1,11 @@
 package model;
 
+import util.BinaryReader;
+import util.BinaryWriter;
+import util.CsvReader;
+import util.CsvWriter;
+
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
@@ -10,28 +16,36 @@ public class Purchase {
     private String customerMobile;
     private Date purchaseDate;
     private List<PurchaseItem> items;
-    private float subtotal;
-    private float discount;
-    private float total;
+    private long subtotal;
+    private long discount;
+    private long total;
     private String paymentMethod;
     private String status;
 
-    public Purchase(String customerMobile, List<PurchaseItem> items, float subtotal,
-                    float discount, String paymentMethod) {
-        this.purchaseId = generatePurchaseId();
+    public Purchase(String purchaseId, String customerMobile, List<PurchaseItem> items, Money subtotal,
+                    Money discount, String paymentMethod) {
+        this.purchaseId = purchaseId;
         this.customerMobile = customerMobile;
         this.purchaseDate = new Date();
         this.items = new ArrayList<>(items);
-        this.subtotal = subtotal;
-        this.discount = discount;
-        this.total = subtotal - discount;
+        this.subtotal = subtotal.getMinorUnits();
+        this.discount = discount.getMinorUnits();
+        this.total = subtotal.minus(discount).getMinorUnits();
         this.paymentMethod = paymentMethod;
         this.status = "Completed";
     }
 
-    private String generatePurchaseId() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmmss");
-        return "PUR-" + sdf.format(new Date()) + "-" + (int)(Math.random() * 1000);
+    public Purchase(String purchaseId, String customerMobile, Date purchaseDate, List<PurchaseItem> items,
+                    Money subtotal, Money discount, Money total, String paymentMethod, String status) {
+        this.purchaseId = purchaseId;
+        this.customerMobile = customerMobile;
+        this.purchaseDate = new Date(purchaseDate.getTime());
+        this.items = new ArrayList<>(items);
+        this.subtotal = subtotal.getMinorUnits();
+        this.discount = discount.getMinorUnits();
+        this.total = total.getMinorUnits();
+        this.paymentMethod = paymentMethod;
+        this.status = status;
     }
 
 
@@ -51,15 +65,19 @@ public class Purchase {
         return new ArrayList<>(items);
     }
 
-    public float getSubtotal() {
-        return subtotal;
+    public Money getSubtotal() {
+        return Money.ofMinor(subtotal);
+    }
+
+    public Money getDiscount() {
+        return Money.ofMinor(discount);
     }
 
-    public float getDiscount() {
-        return discount;
+    public Money getTotal() {
+        return Money.ofMinor(total);
     }
 
-    public float getTotal() {
+    public long getTotalMinor() {
         return total;
     }
 
@@ -84,61 +102,89 @@ public class Purchase {
         return sdf.format(purchaseDate);
     }
 
+    // The eight purchase fields are followed by five fields per item
     public String toCSV() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(purchaseId).append(",")
-                .append(customerMobile).append(",")
-                .append(getFormattedDate()).append(",")
-                .append(subtotal).append(",")
-                .append(discount).append(",")
-                .append(total).append(",")
-                .append(paymentMethod).append(",")
-                .append(status);
+        StringBuilder sb = new StringBuilder(128 + items.size() * 48);
+        CsvWriter writer = new CsvWriter(sb)
+                .field(purchaseId)
+                .field(customerMobile)
+                .field(getFormattedDate())
+                .field(getSubtotal().toString())
+                .field(getDiscount().toString())
+                .field(getTotal().toString())
+                .field(paymentMethod)
+                .field(status);
 
         for (PurchaseItem item : items) {
-            sb.append(";").append(item.toCSV());
+            item.writeCsv(writer);
         }
 
         return sb.toString();
     }
 
     public static Purchase fromCSV(String csv) {
-        String[] parts = csv.split(",", 8);
-        if (parts.length < 8) return null;
+        String[] parts = CsvReader.parseLine(csv);
+        if (parts.length < 8 || (parts.length - 8) % 5 != 0) return null;
 
         try {
             String purchaseId = parts[0];
             String customerMobile = parts[1];
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
             Date purchaseDate = sdf.parse(parts[2]);
-            float subtotal = Float.parseFloat(parts[3]);
-            float discount = Float.parseFloat(parts[4]);
-            float total = Float.parseFloat(parts[5]);
+            Money subtotal = Money.parse(parts[3]);
+            Money discount = Money.parse(parts[4]);
+            Money total = Money.parse(parts[5]);
             String paymentMethod = parts[6];
             String status = parts[7];
 
             List<PurchaseItem> items = new ArrayList<>();
-            if (parts.length > 8) {
-                String[] itemParts = parts[8].split(";");
-                for (String itemStr : itemParts) {
-                    if (!itemStr.isEmpty()) {
-                        PurchaseItem item = PurchaseItem.fromCSV(itemStr);
-                        if (item != null) items.add(item);
-                    }
-                }
+            for (int offset = 8; offset < parts.length; offset += 5) {
+                PurchaseItem item = PurchaseItem.fromFields(parts, offset);
+                if (item != null) items.add(item);
             }
 
-            Purchase purchase = new Purchase(customerMobile, items, subtotal, discount, paymentMethod);
-            purchase.purchaseId = purchaseId;
-            purchase.purchaseDate = purchaseDate;
-            purchase.status = status;
-            return purchase;
+            return new Purchase(purchaseId, customerMobile, purchaseDate, items,
+                    subtotal, discount, total, paymentMethod, status);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    public void writeBinary(BinaryWriter out) throws IOException {
+        out.writeString(purchaseId);
+        out.writeString(customerMobile);
+        out.writeVarLong(purchaseDate.getTime());
+        out.writeVarLong(subtotal);
+        out.writeVarLong(discount);
+        out.writeVarLong(total);
+        out.writeString(paymentMethod);
+        out.writeString(status);
+        out.writeVarInt(items.size());
+        for (PurchaseItem item : items) {
+            item.writeBinary(out);
+        }
+    }
+
+    public static Purchase readBinary(BinaryReader in) throws IOException {
+        String purchaseId = in.readString();
+        String customerMobile = in.readString();
+        Date purchaseDate = new Date(in.readVarLong());
+        Money subtotal = Money.ofMinor(in.readVarLong());
+        Money discount = Money.ofMinor(in.readVarLong());
+        Money total = Money.ofMinor(in.readVarLong());
+        String paymentMethod = in.readString();
+        String status = in.readString();
+
+        int itemCount = in.readVarInt();
+        List<PurchaseItem> items = new ArrayList<>(Math.min(itemCount, 1024));
+        for (int i = 0; i < itemCount; i++) {
+            items.add(PurchaseItem.readBinary(in));
+        }
+        return new Purchase(purchaseId, customerMobile, purchaseDate, items,
+                subtotal, discount, total, paymentMethod, status);
+    }
+
     @Override
     public String toString() {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -152,9 +198,9 @@ public class Purchase {
             sb.append("  - ").append(item.toString()).append("\n");
         }
 
-        sb.append(String.format("Subtotal: $%.2f\n", subtotal))
-                .append(String.format("Discount: $%.2f\n", discount))
-                .append(String.format("Total: $%.2f\n", total))
+        sb.append("Subtotal: ").append(getSubtotal().format()).append("\n")
+                .append("Discount: ").append(getDiscount().format()).append("\n")
+                .append("Total: ").append(getTotal().format()).append("\n")
                 .append("Payment Method: ").append(paymentMethod).append("\n")
                 .append("Status: ").append(status);
 
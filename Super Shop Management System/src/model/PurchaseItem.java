@@ -1,18 +1,25 @@
 package model;
 
+import util.BinaryReader;
+import util.BinaryWriter;
+import util.CsvReader;
+import util.CsvWriter;
+
+import java.io.IOException;
+
 public class PurchaseItem {
     private int productId;
     private String productName;
-    private float unitPrice;
+    private long unitPrice;
     private int quantity;
-    private float itemTotal;
+    private long itemTotal;
 
-    public PurchaseItem(int productId, String productName, float unitPrice, int quantity) {
+    public PurchaseItem(int productId, String productName, Money unitPrice, int quantity) {
         this.productId = productId;
         this.productName = productName;
-        this.unitPrice = unitPrice;
+        this.unitPrice = unitPrice.getMinorUnits();
         this.quantity = quantity;
-        this.itemTotal = unitPrice * quantity;
+        this.itemTotal = Math.multiplyExact(this.unitPrice, quantity);
     }
 
     public int getProductId() {
@@ -23,59 +30,84 @@ public class PurchaseItem {
         return productName;
     }
 
-    public float getUnitPrice() {
-        return unitPrice;
+    public Money getUnitPrice() {
+        return Money.ofMinor(unitPrice);
     }
 
     public int getQuantity() {
         return quantity;
     }
 
-    public float getItemTotal() {
+    public Money getItemTotal() {
+        return Money.ofMinor(itemTotal);
+    }
+
+    public long getItemTotalMinor() {
         return itemTotal;
     }
 
     public String toCSV() {
-        return String.join(",",
-                String.valueOf(productId),
-                productName,
-                String.valueOf(unitPrice),
-                String.valueOf(quantity),
-                String.valueOf(itemTotal));
+        StringBuilder line = new StringBuilder(48);
+        writeCsv(new CsvWriter(line));
+        return line.toString();
+    }
+
+    /** Writes the item's five fields: product id, name, unit price, quantity, total. */
+    public void writeCsv(CsvWriter writer) {
+        writer.field(productId)
+                .field(productName)
+                .field(getUnitPrice().toString())
+                .field(quantity)
+                .field(getItemTotal().toString());
     }
 
     public static PurchaseItem fromCSV(String csv) {
-        String[] parts = csv.split(",");
-        if (parts.length != 5) {
+        return fromFields(CsvReader.parseLine(csv), 0);
+    }
+
+    /** Reads an item from the five fields starting at {@code offset}; null if they are malformed. */
+    static PurchaseItem fromFields(String[] parts, int offset) {
+        if (parts.length < offset + 5) {
             return null;
         }
 
         try {
-            int productId = Integer.parseInt(parts[0]);
-            String productName = parts[1];
-            float unitPrice = Float.parseFloat(parts[2]);
-            int quantity = Integer.parseInt(parts[3]);
+            int productId = Integer.parseInt(parts[offset].trim());
+            String productName = parts[offset + 1];
+            Money unitPrice = Money.parse(parts[offset + 2]);
+            int quantity = Integer.parseInt(parts[offset + 3].trim());
             return new PurchaseItem(productId, productName, unitPrice, quantity);
-        } catch (NumberFormatException e) {
+        } catch (IllegalArgumentException e) {
             System.err.println("Error parsing PurchaseItem from CSV: " + e.getMessage());
             return null;
         }
     }
 
+    public void writeBinary(BinaryWriter out) throws IOException {
+        out.writeVarInt(productId);
+        out.writeString(productName);
+        out.writeVarLong(unitPrice);
+        out.writeVarInt(quantity);
+    }
+
+    public static PurchaseItem readBinary(BinaryReader in) throws IOException {
+        return new PurchaseItem(in.readVarInt(), in.readString(), Money.ofMinor(in.readVarLong()), in.readVarInt());
+    }
+
     @Override
     public String toString() {
-        return String.format("%s (ID: %d) - %d x $%.2f = $%.2f",
+        return String.format("%s (ID: %d) - %d x %s = %s",
                 productName,
                 productId,
                 quantity,
-                unitPrice,
-                itemTotal);
+                getUnitPrice().format(),
+                getItemTotal().format());
     }
 
     public static class Builder {
         private int productId;
         private String productName;
-        private float unitPrice;
+        private Money unitPrice;
         private int quantity;
 
         public Builder productId(int productId) {
@@ -88,7 +120,7 @@ public class PurchaseItem {
             return this;
         }
 
-        public Builder unitPrice(float unitPrice) {
+        public Builder unitPrice(Money unitPrice) {
             this.unitPrice = unitPrice;
             return this;
         }
@@ -0,0 +1,67 @@
+package model;
+
+import java.util.Date;
+
+public class StockAlert {
+    public enum Level {
+        OK, LOW, OUT_OF_STOCK
+    }
+
+    private final int productId;
+    private final String productName;
+    private final int quantity;
+    private final int threshold;
+    private final Level previousLevel;
+    private final Level level;
+    private final Date raisedAt;
+
+    public StockAlert(int productId, String productName, int quantity, int threshold,
+                      Level previousLevel, Level level) {
+        this.productId = productId;
+        this.productName = productName;
+        this.quantity = quantity;
+        this.threshold = threshold;
+        this.previousLevel = previousLevel;
+        this.level = level;
+        this.raisedAt = new Date();
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public Level getPreviousLevel() {
+        return previousLevel;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public Date getRaisedAt() {
+        return new Date(raisedAt.getTime());
+    }
+
+    @Override
+    public String toString() {
+        return switch (level) {
+            case LOW -> String.format("⚠️ %s (ID: %d) is low on stock: %d left (threshold %d)",
+                    productName, productId, quantity, threshold);
+            case OUT_OF_STOCK -> String.format("❌ %s (ID: %d) is out of stock", productName, productId);
+            case OK -> String.format("✅ %s (ID: %d) is back in stock: %d available",
+                    productName, productId, quantity);
+        };
+    }
+}
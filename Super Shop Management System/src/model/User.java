@@ -1,11 +1,25 @@
 package model;
 
+import util.BinaryReader;
+import util.BinaryWriter;
+import util.CsvReader;
+import util.CsvWriter;
+
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
 public class User implements Serializable {
     private static final long serialVersionUID = 1L;
+    private static final DateTimeFormatter CSV_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int ADMIN_FLAG = 1;
+    private static final int VIP_FLAG = 2;
+    private static final int ACTIVE_FLAG = 4;
+    private static final int HAS_LAST_LOGIN_FLAG = 8;
     private String name;
     private String mobile;
     private String password;
@@ -34,6 +48,10 @@ public class User implements Serializable {
         this.isActive = isActive;
     }
 
+    // Used when reading saved users, which were validated when they were created
+    private User() {
+    }
+
     public boolean isVip() {
         return isVip;
     }
@@ -133,37 +151,36 @@ public class User implements Serializable {
     }
 
     public String toCSV() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        return String.join(",",
-                name,
-                mobile,
-                password,
-                String.valueOf(age),
-                String.valueOf(isAdmin),
-                String.valueOf(isVip),
-                sdf.format(registrationDate),
-                lastLoginDate != null ? sdf.format(lastLoginDate) : "null",
-                String.valueOf(isActive)
-        );
+        StringBuilder line = new StringBuilder(96);
+        new CsvWriter(line)
+                .field(name)
+                .field(mobile)
+                .field(password)
+                .field(age)
+                .field(isAdmin)
+                .field(isVip)
+                .field(formatCsvDate(registrationDate))
+                .field(lastLoginDate != null ? formatCsvDate(lastLoginDate) : "null")
+                .field(isActive);
+        return line.toString();
     }
 
     public static User fromCSV(String csvLine) {
         try {
-            String[] parts = csvLine.split(",");
+            String[] parts = CsvReader.parseLine(csvLine);
             if (parts.length != 9) {
                 throw new IllegalArgumentException("Invalid CSV format for User");
             }
 
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
             return new User(
                     parts[0],
                     parts[1],
                     parts[2],
-                    Integer.parseInt(parts[3]),
+                    Integer.parseInt(parts[3].trim()),
                     Boolean.parseBoolean(parts[4]),
                     Boolean.parseBoolean(parts[5]),
-                    sdf.parse(parts[6]),
-                    parts[7].equals("null") ? null : sdf.parse(parts[7]),
+                    parseCsvDate(parts[6]),
+                    parts[7].equals("null") ? null : parseCsvDate(parts[7]),
                     Boolean.parseBoolean(parts[8])
             );
         } catch (Exception e) {
@@ -172,6 +189,42 @@ public class User implements Serializable {
         }
     }
 
+    public void writeBinary(BinaryWriter out) throws IOException {
+        out.writeString(name);
+        out.writeString(mobile);
+        out.writeString(password);
+        out.writeVarInt(age);
+        out.writeByte((isAdmin ? ADMIN_FLAG : 0) | (isVip ? VIP_FLAG : 0) | (isActive ? ACTIVE_FLAG : 0)
+                | (lastLoginDate != null ? HAS_LAST_LOGIN_FLAG : 0));
+        out.writeVarLong(registrationDate.getTime());
+        if (lastLoginDate != null) {
+            out.writeVarLong(lastLoginDate.getTime());
+        }
+    }
+
+    public static User readBinary(BinaryReader in) throws IOException {
+        User user = new User();
+        user.name = in.readString();
+        user.mobile = in.readString();
+        user.password = in.readString();
+        user.age = in.readVarInt();
+        int flags = in.readByte();
+        user.isAdmin = (flags & ADMIN_FLAG) != 0;
+        user.isVip = (flags & VIP_FLAG) != 0;
+        user.isActive = (flags & ACTIVE_FLAG) != 0;
+        user.registrationDate = new Date(in.readVarLong());
+        user.lastLoginDate = (flags & HAS_LAST_LOGIN_FLAG) != 0 ? new Date(in.readVarLong()) : null;
+        return user;
+    }
+
+    private static String formatCsvDate(Date date) {
+        return CSV_DATE_FORMAT.format(LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
+    }
+
+    private static Date parseCsvDate(String text) {
+        return Date.from(LocalDateTime.parse(text.trim(), CSV_DATE_FORMAT).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
     @Override
     public String toString() {
         return String.format("User[Name: %s, Mobile: %s, Age: %d, %s, Registered: %s, Last Login: %s, %s]",
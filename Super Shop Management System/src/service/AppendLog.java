@@ -0,0 +1,168 @@
+package service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of length-prefixed, CRC-checked records.
+ * A torn or corrupted tail (e.g. after a crash mid-write) ends replay
+ * instead of failing it, so everything written before the crash survives.
+ */
+class AppendLog implements Closeable {
+    private static final int FRAME_HEADER_BYTES = 8;   // length + crc
+    private static final int FILE_HEADER_BYTES = 6;    // magic + version
+    private static final int MAX_RECORD_BYTES = 64 << 20;
+
+    interface RecordHandler {
+        void handle(int version, DataInputStream record) throws IOException;
+    }
+
+    /**
+     * Outcome of a replay: the file's format version (-1 if the header was torn),
+     * how many records were intact and where the last one ended. Anything past
+     * {@code validLength} is a torn or corrupted tail.
+     */
+    record ReplayResult(int version, long records, long validLength) {
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private long recordCount;
+
+    AppendLog(Path path, int magic, short version) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            header.putInt(magic).putShort(version).flip();
+            writeFully(header);
+        }
+    }
+
+    synchronized void append(byte[] record) throws IOException {
+        append(List.of(record));
+    }
+
+    // All records go out in one write, so a batch costs a single system call
+    synchronized void append(List<byte[]> records) throws IOException {
+        int total = 0;
+        for (byte[] record : records) {
+            total += FRAME_HEADER_BYTES + record.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        for (byte[] record : records) {
+            crc.reset();
+            crc.update(record);
+            buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+        }
+        buffer.flip();
+        writeFully(buffer);
+        recordCount += records.size();
+    }
+
+    /**
+     * Syncs everything appended so far. Appends carry on while it runs; a log
+     * closed meanwhile was synced by {@link #close}.
+     */
+    void force() throws IOException {
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // Closed, and so synced, while this was waiting
+        }
+    }
+
+    synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+        }
+        channel.close();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Replays every intact record of the log at {@code path}.
+     */
+    static ReplayResult replay(Path path, int magic, RecordHandler handler) throws IOException {
+        int version = -1;
+        long replayed = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != magic) {
+                throw new IOException("Not a log file: " + path);
+            }
+            version = in.readUnsignedShort();
+            validLength = FILE_HEADER_BYTES;
+
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > MAX_RECORD_BYTES) break;
+
+                byte[] record = new byte[length];
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    System.err.println("⚠️ Ignoring torn record at end of " + path.getFileName());
+                    break;
+                }
+
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue() != checksum) {
+                    System.err.println("⚠️ Ignoring corrupted tail of " + path.getFileName());
+                    break;
+                }
+
+                handler.handle(version, new DataInputStream(new ByteArrayInputStream(record)));
+                replayed++;
+                validLength += FRAME_HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // Header itself was never fully written
+        }
+        return new ReplayResult(version, replayed, validLength);
+    }
+
+    /**
+     * Cuts a torn tail off so that new records are appended right after the
+     * last intact one.
+     */
+    static void truncate(Path path, long validLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+}
@@ -2,24 +2,35 @@ package service;
 
 import model.User;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class AuthService {
     private static final String ADMIN_KEY = "admin123";
     private List<User> users;
-    private static final String USERS_FILE = "data/users.dat";
-    private static final String CART_FILE = "data/cart.dat";
+    private final Map<String, User> usersByMobile;
+    private static final String USERS_FILE = DataDirectory.resolve("users.dat");
+    private static final String CART_FILE = DataDirectory.resolve("cart.dat");
+    private static final int USERS_MAGIC = 0x55535253; // "USRS"
+    private static final int USERS_VERSION = 1;
+
+    // Logins and profile changes in the same window share one write of the file
+    private final PersistenceScheduler.Store usersFile;
 
     public AuthService() {
         users = new ArrayList<>();
+        usersByMobile = new HashMap<>();
+        usersFile = PersistenceScheduler.shared().register("users", this::writeUsers);
         loadUsers();
     }
+
     public void viewUserDetails(String mobile) {
-        User user = users.stream()
-                .filter(u -> u.getMobile().equals(mobile))
-                .findFirst()
-                .orElse(null);
+        User user = findUser(mobile);
 
         if (user != null) {
             System.out.println("\n=== USER DETAILS ===");
@@ -35,28 +46,35 @@ public class AuthService {
         }
     }
 
-    public User login(String mobile, String password, boolean isAdmin) {
-        for (User user : users) {
-            if (user.getMobile().equals(mobile) &&
-                    user.verifyPassword(password) &&
-                    user.isAdmin() == isAdmin) {
-                user.updateLastLogin();
-                saveUsers();
-                return user;
-            }
+    public synchronized User login(String mobile, String password, boolean isAdmin) {
+        User user = usersByMobile.get(mobile);
+        if (user != null &&
+                user.verifyPassword(password) &&
+                user.isAdmin() == isAdmin) {
+            user.updateLastLogin();
+            saveUsers();
+            return user;
         }
         return null;
     }
 
     public void logout() {
-        saveUsers();
+        flush();
+    }
+
+    /**
+     * Writes any changes not saved yet and waits for them to reach the disk.
+     */
+    public void flush() {
+        usersFile.flush();
     }
 
-    public boolean registerUser(User newUser) {
+    public synchronized boolean registerUser(User newUser) {
         if (isMobileRegistered(newUser.getMobile())) {
             return false;
         }
         users.add(newUser);
+        usersByMobile.put(newUser.getMobile(), newUser);
         saveUsers();
         return true;
     }
@@ -65,7 +83,7 @@ public class AuthService {
         return ADMIN_KEY.equals(inputKey.trim());
     }
 
-    public void viewAllUsers() {
+    public synchronized void viewAllUsers() {
         System.out.println("\n=== ALL REGISTERED USERS ===");
         System.out.printf("%-15s %-20s %-10s %-10s %-15s\n",
                 "Mobile", "Name", "Age", "Type", "Last Login");
@@ -81,59 +99,80 @@ public class AuthService {
         }
     }
 
-    public boolean updateUserProfile(String mobile, String newName, String newPassword) {
-        for (User user : users) {
-            if (user.getMobile().equals(mobile)) {
-                if (newName != null && !newName.trim().isEmpty()) {
-                    user.setName(newName.trim());
-                }
-                if (newPassword != null && newPassword.length() >= 8) {
-                    user.setPassword(newPassword);
-                }
-                saveUsers();
-                return true;
-            }
+    public synchronized boolean updateUserProfile(String mobile, String newName, String newPassword) {
+        User user = usersByMobile.get(mobile);
+        if (user == null) return false;
+
+        if (newName != null && !newName.trim().isEmpty()) {
+            user.setName(newName.trim());
+        }
+        if (newPassword != null && newPassword.length() >= 8) {
+            user.setPassword(newPassword);
         }
-        return false;
+        saveUsers();
+        return true;
+    }
+
+    private synchronized User findUser(String mobile) {
+        return usersByMobile.get(mobile);
     }
 
     private boolean isMobileRegistered(String mobile) {
-        return users.stream().anyMatch(u -> u.getMobile().equals(mobile));
+        return usersByMobile.containsKey(mobile);
     }
 
     private void saveUsers() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream(USERS_FILE))) {
-            oos.writeObject(users);
-        } catch (IOException e) {
-            System.err.println("Error saving users: " + e.getMessage());
+        usersFile.markDirty();
+    }
+
+    private void writeUsers() throws IOException {
+        List<User> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(users);
         }
+        DataFiles.write(Paths.get(USERS_FILE), USERS_MAGIC, USERS_VERSION, out -> {
+            out.writeVarInt(snapshot.size());
+            for (User user : snapshot) {
+                user.writeBinary(out);
+            }
+        });
     }
 
     @SuppressWarnings("unchecked")
     private void loadUsers() {
-        File file = new File(USERS_FILE);
-        if (file.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(
-                    new FileInputStream(file))) {
-                users = (List<User>) ois.readObject();
-            } catch (IOException | ClassNotFoundException e) {
+        Path file = Paths.get(USERS_FILE);
+        boolean legacy = false;
+        if (Files.exists(file)) {
+            try {
+                legacy = DataFiles.isJavaSerialized(file);
+                users = legacy
+                        ? DataFiles.readJavaSerialized(file, in -> (List<User>) in.readObject())
+                        : DataFiles.read(file, USERS_MAGIC, (in, version) -> {
+                            int count = in.readVarInt();
+                            List<User> loaded = new ArrayList<>(count);
+                            for (int i = 0; i < count; i++) {
+                                loaded.add(User.readBinary(in));
+                            }
+                            return loaded;
+                        });
+            } catch (IOException e) {
                 System.err.println("Error loading users: " + e.getMessage());
                 users = new ArrayList<>();
+                legacy = false;
             }
         }
+        users.forEach(user -> usersByMobile.putIfAbsent(user.getMobile(), user));
+        if (legacy) saveUsers();
     }
 
-    public boolean upgradeToAdmin(String mobile, String adminKey) {
+    public synchronized boolean upgradeToAdmin(String mobile, String adminKey) {
         if (!validateAdminKey(adminKey)) return false;
 
-        for (User user : users) {
-            if (user.getMobile().equals(mobile)) {
-                user.setAdmin(true);
-                saveUsers();
-                return true;
-            }
-        }
-        return false;
+        User user = usersByMobile.get(mobile);
+        if (user == null) return false;
+
+        user.setAdmin(true);
+        saveUsers();
+        return true;
     }
 }
\ No newline at end of file
@@ -1,118 +1,192 @@
 package service;
 
+import model.Cart;
 import model.CartItem;
+import model.Money;
 import model.Product;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Keeps one independent cart per customer (keyed by mobile number or a till
+ * session id). Each cart is guarded by its own monitor and persisted to its
+ * own file under {@code data/carts}, so different customers never contend.
+ * Whatever is in a cart is reserved for it for a while (see
+ * {@link ProductService#reserveStock}), so a checkout does not fail because
+ * another cart was sold the same units first. A cart that ends up empty, after
+ * a checkout for instance, is dropped from memory and its file deleted.
+ */
 public class CartService {
-    private static final String CART_FILE = "data/cart.dat";
-    private static final String TRANSACTION_DIR = "data/transactions";
-    private static final float VIP_DISCOUNT = 0.1f; // 10% discount for VIP customers
+    private static final String CART_DIR = DataDirectory.resolve("carts");
+    private static final String TRANSACTION_DIR = DataDirectory.resolve("transactions");
+    private static final int VIP_DISCOUNT_PERCENT = 10;
+    private static final int CART_MAGIC = 0x43415254; // "CART"
+    private static final int CART_VERSION = 1;
 
     private final ProductService productService;
-    private List<CartItem> cartItems;
-    private float discountRate = 0.0f;
+    private final ConcurrentMap<String, Cart> carts;
+    private final ConcurrentMap<String, PersistenceScheduler.Store> cartFiles;
 
     public CartService(ProductService productService) {
         this.productService = Objects.requireNonNull(productService, "ProductService cannot be null");
-        this.cartItems = new ArrayList<>();
+        this.carts = new ConcurrentHashMap<>();
+        this.cartFiles = new ConcurrentHashMap<>();
         ensureDataDirectoryExists();
-        loadCartItems();
     }
 
-    public synchronized void addToCart(int productId, int quantity) {
-        try {
-            validateQuantity(quantity);
-            Product product = getValidProduct(productId);
-            validateStock(product, quantity);
-
-            Optional<CartItem> existingItem = findCartItem(productId);
-
-            if (existingItem.isPresent()) {
-                updateExistingItem(existingItem.get(), product, quantity);
-            } else {
-                addNewCartItem(product, quantity);
+    public void addToCart(String cartKey, int productId, int quantity) {
+        awaitSave(withCart(cartKey, cart -> {
+            try {
+                validateQuantity(quantity);
+                Product product = getValidProduct(productId);
+
+                Optional<CartItem> existingItem = cart.findItem(productId);
+                int cartQuantity = existingItem.map(CartItem::getQuantity).orElse(0) + quantity;
+                reserveStock(cart, product, cartQuantity);
+
+                if (existingItem.isPresent()) {
+                    return updateExistingItem(cart, existingItem.get(), product, quantity);
+                }
+                return addNewCartItem(cart, product, quantity);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                System.err.println("❌ Error: " + e.getMessage());
+                return null;
             }
-        } catch (IllegalArgumentException | IllegalStateException e) {
-            System.err.println("❌ Error: " + e.getMessage());
-        }
+        }));
     }
 
-    public synchronized void updateCartItem(int productId, int newQuantity) {
-        try {
-            validateQuantity(newQuantity);
-            Product product = getValidProduct(productId);
-
-            if (newQuantity == 0) {
-                removeCartItem(productId);
-                return;
+    public void updateCartItem(String cartKey, int productId, int newQuantity) {
+        awaitSave(withCart(cartKey, cart -> {
+            try {
+                if (newQuantity == 0) {
+                    return removeItem(cart, productId);
+                }
+
+                validateQuantity(newQuantity);
+                Product product = getValidProduct(productId);
+
+                Optional<CartItem> item = cart.findItem(productId);
+                if (item.isEmpty()) {
+                    System.out.println("❌ Product not found in cart.");
+                    return null;
+                }
+                reserveStock(cart, product, newQuantity);
+                return updateItemQuantity(cart, item.get(), newQuantity, product);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                System.err.println("❌ Error: " + e.getMessage());
+                return null;
             }
+        }));
+    }
 
-            validateStock(product, newQuantity);
-
-            findCartItem(productId).ifPresentOrElse(
-                    item -> updateItemQuantity(item, newQuantity, product),
-                    () -> System.out.println("❌ Product not found in cart.")
-            );
-        } catch (IllegalArgumentException | IllegalStateException e) {
-            System.err.println("❌ Error: " + e.getMessage());
-        }
+    public void removeCartItem(String cartKey, int productId) {
+        awaitSave(withCart(cartKey, cart -> removeItem(cart, productId)));
     }
 
-    public synchronized void removeCartItem(int productId) {
-        boolean removed = cartItems.removeIf(item -> item.getProductId() == productId);
-        if (removed) {
-            if (saveCartItems()) {
-                System.out.println("✅ Product removed from cart.");
-            } else {
-                System.out.println("❌ Failed to save cart changes.");
-            }
-        } else {
+    private CompletableFuture<Void> removeItem(Cart cart, int productId) {
+        if (!cart.removeItem(productId)) {
             System.out.println("❌ Product not found in cart.");
+            return null;
         }
+        productService.releaseReservation(cart.getOwnerKey(), productId);
+        System.out.println("✅ Product removed from cart.");
+        return saveCart(cart);
     }
 
-    public synchronized boolean checkout(boolean isVipCustomer) {
-        if (cartItems.isEmpty()) {
-            System.out.println("❌ Your cart is empty.");
-            return false;
-        }
+    /**
+     * Checks the cart out and empties it.
+     *
+     * @return a copy of the cart as it was checked out (items and discount rate),
+     *         or null if the checkout failed
+     */
+    public Cart checkout(String cartKey, boolean isVipCustomer) {
+        return withCart(cartKey, cart -> {
+            if (cart.isEmpty()) {
+                System.out.println("❌ Your cart is empty.");
+                return null;
+            }
 
-        if (!validateCartItemsStock()) {
-            return false;
-        }
+            if (!validateCartItemsStock(cart)) {
+                return null;
+            }
 
-        this.discountRate = isVipCustomer ? VIP_DISCOUNT : 0.0f;
+            cart.setDiscountPercent(isVipCustomer ? VIP_DISCOUNT_PERCENT : 0);
 
-        if (!updateInventory()) {
-            System.out.println("❌ Failed to update inventory.");
-            return false;
-        }
+            if (!updateInventory(cart)) {
+                System.out.println("❌ Failed to update inventory.");
+                return null;
+            }
 
-        String receipt = generateReceipt(isVipCustomer);
-        saveTransaction(receipt);
-        clearCart();
+            String receipt = generateReceipt(cart, isVipCustomer);
+            saveTransaction(cart, receipt);
 
-        System.out.println(receipt);
-        return true;
+            Cart checkedOut = new Cart(cart.getOwnerKey(), cart.getItems());
+            checkedOut.setDiscountPercent(cart.getDiscountPercent());
+            // Emptied, so the cart is dropped along with its file once this returns
+            cart.clear();
+            productService.releaseReservations(cart.getOwnerKey());
+
+            System.out.println(receipt);
+            return checkedOut;
+        });
     }
 
-    public synchronized void viewCart() {
-        if (cartItems.isEmpty()) {
-            System.out.println("\n🛒 Your cart is empty.");
-            return;
+    public void viewCart(String cartKey) {
+        withCart(cartKey, cart -> {
+            if (cart.isEmpty()) {
+                System.out.println("\n🛒 Your cart is empty.");
+                return null;
+            }
+
+            printCartDetails(cart);
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code action} under the cart's monitor. A cart dropped while this
+     * waited for the monitor is replaced by a fresh one, and a cart the action
+     * leaves empty is dropped, so empty carts take no memory or file.
+     */
+    private <T> T withCart(String cartKey, Function<Cart, T> action) {
+        while (true) {
+            Cart cart = getCart(cartKey);
+            synchronized (cart) {
+                if (carts.get(cart.getOwnerKey()) != cart) continue;
+
+                T result = action.apply(cart);
+                if (cart.isEmpty()) {
+                    evict(cart);
+                }
+                return result;
+            }
         }
+    }
 
-        printCartDetails();
+    private Cart getCart(String cartKey) {
+        if (cartKey == null || cartKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("Cart key cannot be null or empty");
+        }
+        return carts.computeIfAbsent(cartKey.trim(), this::loadCart);
     }
 
-    private Optional<CartItem> findCartItem(int productId) {
-        return cartItems.stream()
-                .filter(item -> item.getProductId() == productId)
-                .findFirst();
+    // The file goes at once, so a cart loaded again right away cannot bring back what was checked out
+    private void evict(Cart cart) {
+        carts.remove(cart.getOwnerKey(), cart);
+        cartFiles.remove(cart.getOwnerKey());
+        try {
+            Files.deleteIfExists(cartFile(cart.getOwnerKey()).toPath());
+        } catch (IOException e) {
+            System.err.println("❌ Error deleting cart file: " + e.getMessage());
+        }
     }
 
     private Product getValidProduct(int productId) {
@@ -129,48 +203,41 @@ public class CartService {
         }
     }
 
-    private void validateStock(Product product, int quantity) {
-        if (quantity > product.getQuantity()) {
+    // Holds the cart's whole quantity of the product, so no other cart can be promised the same units
+    private void reserveStock(Cart cart, Product product, int cartQuantity) {
+        if (!productService.reserveStock(cart.getOwnerKey(), product.getId(), cartQuantity)) {
             throw new IllegalStateException("Not enough stock for " + product.getName() +
-                    ". Available: " + product.getQuantity());
+                    ". Available: " + productService.getAvailableQuantity(product.getId(), cart.getOwnerKey()));
         }
     }
 
-    private void updateExistingItem(CartItem item, Product product, int additionalQuantity) {
+    private CompletableFuture<Void> updateExistingItem(Cart cart, CartItem item, Product product, int additionalQuantity) {
         int newQuantity = item.getQuantity() + additionalQuantity;
-        if (newQuantity > product.getQuantity()) {
-            System.out.println("❌ Cannot add more than available stock.");
-            return;
-        }
         item.setQuantity(newQuantity);
-        if (saveCartItems()) {
-            System.out.println("✅ Updated in cart: " + product.getName() + " (Qty: " + newQuantity + ")");
-        }
+        System.out.println("✅ Updated in cart: " + product.getName() + " (Qty: " + newQuantity + ")");
+        return saveCart(cart);
     }
 
-    private void addNewCartItem(Product product, int quantity) {
-        cartItems.add(new CartItem(
+    private CompletableFuture<Void> addNewCartItem(Cart cart, Product product, int quantity) {
+        cart.addItem(new CartItem(
                 product.getId(),
                 product.getName(),
                 product.getPrice(),
                 quantity
         ));
-        if (saveCartItems()) {
-            System.out.println("✅ Added to cart: " + product.getName() + " (Qty: " + quantity + ")");
-        }
+        System.out.println("✅ Added to cart: " + product.getName() + " (Qty: " + quantity + ")");
+        return saveCart(cart);
     }
 
-    private void updateItemQuantity(CartItem item, int newQuantity, Product product) {
+    private CompletableFuture<Void> updateItemQuantity(Cart cart, CartItem item, int newQuantity, Product product) {
         item.setQuantity(newQuantity);
-        if (saveCartItems()) {
-            System.out.println("✅ Updated: " + product.getName() + " (New Qty: " + newQuantity + ")");
-        }
+        System.out.println("✅ Updated: " + product.getName() + " (New Qty: " + newQuantity + ")");
+        return saveCart(cart);
     }
 
-    private boolean validateCartItemsStock() {
-        for (CartItem item : cartItems) {
-            Product product = productService.getProductById(item.getProductId());
-            if (product == null || product.getQuantity() < item.getQuantity()) {
+    private boolean validateCartItemsStock(Cart cart) {
+        for (CartItem item : cart.getItems()) {
+            if (productService.getAvailableQuantity(item.getProductId(), cart.getOwnerKey()) < item.getQuantity()) {
                 System.out.println("❌ " + item.getName() + " is no longer available in sufficient quantity.");
                 return false;
             }
@@ -178,61 +245,63 @@ public class CartService {
         return true;
     }
 
-    private boolean updateInventory() {
-        for (CartItem item : cartItems) {
-            if (!productService.updateProductQuantity(item.getProductId(), -item.getQuantity())) {
-                System.out.println("❌ Failed to update inventory for: " + item.getName());
-                return false;
-            }
+    private boolean updateInventory(Cart cart) {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem item : cart.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
+        try {
+            return productService.sellReserved(cart.getOwnerKey(), quantities);
+        } catch (IllegalArgumentException e) {
+            System.out.println("❌ " + e.getMessage());
+            return false;
         }
-        return true;
     }
 
-    public float calculateSubtotal() {
-        return (float) cartItems.stream()
-                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                .sum();
+    public Money calculateSubtotal(String cartKey) {
+        return withCart(cartKey, Cart::getSubtotal);
     }
 
-    public float calculateDiscount() {
-        return calculateSubtotal() * discountRate;
+    public Money calculateDiscount(String cartKey) {
+        return withCart(cartKey, Cart::getDiscount);
     }
 
-    public float calculateTotal() {
-        return calculateSubtotal() - calculateDiscount();
+    public Money calculateTotal(String cartKey) {
+        return withCart(cartKey, Cart::getTotal);
     }
 
-    private void printCartDetails() {
-        float subtotal = calculateSubtotal();
-        float discount = calculateDiscount();
-        float total = calculateTotal();
+    private void printCartDetails(Cart cart) {
+        Money subtotal = cart.getSubtotal();
+        Money discount = cart.getDiscount();
+        Money total = subtotal.minus(discount);
 
         System.out.println("\n🛒 YOUR SHOPPING CART");
         System.out.println("------------------------------------------------------------");
         System.out.printf("%-5s %-25s %10s %8s %12s\n", "ID", "PRODUCT", "PRICE", "QTY", "SUBTOTAL");
         System.out.println("------------------------------------------------------------");
 
-        cartItems.forEach(item -> System.out.printf("%-5d %-25s %10.2f %8d %12.2f\n",
+        cart.getItems().forEach(item -> System.out.printf("%-5d %-25s %10s %8d %12s\n",
                 item.getProductId(),
                 item.getName(),
                 item.getPrice(),
                 item.getQuantity(),
-                item.getPrice() * item.getQuantity()));
+                item.getSubtotal()));
 
         System.out.println("------------------------------------------------------------");
-        System.out.printf("%40s: %12.2f\n", "Subtotal", subtotal);
-        if (discount > 0) {
-            System.out.printf("%40s: %12.2f (%.0f%%)\n", "Discount", discount, discountRate * 100);
+        System.out.printf("%40s: %12s\n", "Subtotal", subtotal);
+        if (discount.isPositive()) {
+            System.out.printf("%40s: %12s (%d%%)\n", "Discount", discount, cart.getDiscountPercent());
         }
-        System.out.printf("%40s: %12.2f\n", "TOTAL", total);
+        System.out.printf("%40s: %12s\n", "TOTAL", total);
         System.out.println("------------------------------------------------------------");
     }
 
-    private String generateReceipt(boolean isVipCustomer) {
+    private String generateReceipt(Cart cart, boolean isVipCustomer) {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        float subtotal = calculateSubtotal();
-        float discount = calculateDiscount();
-        float total = subtotal - discount;
+        Money subtotal = cart.getSubtotal();
+        Money discount = cart.getDiscount();
+        Money total = subtotal.minus(discount);
 
         StringBuilder receipt = new StringBuilder();
         receipt.append("\n════════════════ RECEIPT ════════════════\n");
@@ -241,19 +310,19 @@ public class CartService {
         receipt.append(String.format("%-5s %-25s %10s %8s %12s\n", "ID", "ITEM", "PRICE", "QTY", "TOTAL"));
         receipt.append("------------------------------------------------\n");
 
-        cartItems.forEach(item -> receipt.append(String.format("%-5d %-25s %10.2f %8d %12.2f\n",
+        cart.getItems().forEach(item -> receipt.append(String.format("%-5d %-25s %10s %8d %12s\n",
                 item.getProductId(),
                 item.getName(),
                 item.getPrice(),
                 item.getQuantity(),
-                item.getPrice() * item.getQuantity())));
+                item.getSubtotal())));
 
         receipt.append("\n------------------------------------------------\n");
-        receipt.append(String.format("%40s: %12.2f\n", "Subtotal", subtotal));
-        if (discount > 0) {
-            receipt.append(String.format("%40s: %12.2f (%.0f%%)\n", "Discount", discount, discountRate * 100));
+        receipt.append(String.format("%40s: %12s\n", "Subtotal", subtotal));
+        if (discount.isPositive()) {
+            receipt.append(String.format("%40s: %12s (%d%%)\n", "Discount", discount, cart.getDiscountPercent()));
         }
-        receipt.append(String.format("%40s: %12.2f\n", "Total", total));
+        receipt.append(String.format("%40s: %12s\n", "Total", total));
         receipt.append("\n══════════ THANK YOU FOR SHOPPING! ══════════\n");
 
         return receipt.toString();
@@ -261,35 +330,90 @@ public class CartService {
 
     private void ensureDataDirectoryExists() {
         new File(TRANSACTION_DIR).mkdirs();
-        new File("data").mkdirs();
+        new File(CART_DIR).mkdirs();
+        new File(DataDirectory.path()).mkdirs();
     }
 
     @SuppressWarnings("unchecked")
-    private void loadCartItems() {
-        File file = new File(CART_FILE);
-        if (!file.exists()) return;
+    private Cart loadCart(String cartKey) {
+        File file = cartFile(cartKey);
+        if (!file.exists()) return new Cart(cartKey);
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            cartItems = (List<CartItem>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+        try {
+            Path path = file.toPath();
+            if (DataFiles.isJavaSerialized(path)) {
+                Cart cart = new Cart(cartKey, DataFiles.readJavaSerialized(path, in -> (List<CartItem>) in.readObject()));
+                saveCart(cart);
+                return cart;
+            }
+            return new Cart(cartKey, DataFiles.read(path, CART_MAGIC, (in, version) -> {
+                int count = in.readVarInt();
+                List<CartItem> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(CartItem.readBinary(in));
+                }
+                return items;
+            }));
+        } catch (IOException e) {
             System.err.println("❌ Error loading cart: " + e.getMessage());
-            cartItems = new ArrayList<>();
+            return new Cart(cartKey);
         }
     }
 
-    private synchronized boolean saveCartItems() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(CART_FILE))) {
-            oos.writeObject(cartItems);
-            return true;
-        } catch (IOException e) {
-            System.err.println("❌ Error saving cart: " + e.getMessage());
-            return false;
+    // A burst of edits to one cart is written to its file once, at the end of the persistence window
+    private CompletableFuture<Void> saveCart(Cart cart) {
+        return cartFiles.computeIfAbsent(cart.getOwnerKey(),
+                key -> PersistenceScheduler.shared().register("cart " + key, () -> writeCart(key)))
+                .markDirty();
+    }
+
+    // Called after leaving the cart's monitor, which the write needs
+    private static void awaitSave(CompletableFuture<Void> saved) {
+        if (saved == null) return;
+
+        try {
+            saved.join();
+        } catch (CompletionException e) {
+            System.err.println("❌ Error saving cart: " + e.getCause().getMessage() + " (will retry)");
+        }
+    }
+
+    // Writes whatever the cart holds now; a cart dropped since it was marked has nothing left to save
+    private void writeCart(String cartKey) throws IOException {
+        Cart cart = carts.get(cartKey);
+        List<CartItem> items = new ArrayList<>();
+        if (cart != null) {
+            synchronized (cart) {
+                items = cart.getItems();
+            }
         }
+        Path file = cartFile(cartKey).toPath();
+        if (items.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+
+        List<CartItem> saved = items;
+        DataFiles.write(file, CART_MAGIC, CART_VERSION, out -> {
+            out.writeVarInt(saved.size());
+            for (CartItem item : saved) {
+                item.writeBinary(out);
+            }
+        });
+    }
+
+    private static File cartFile(String cartKey) {
+        return new File(CART_DIR, "cart_" + toFileSafeKey(cartKey) + ".dat");
+    }
+
+    private static String toFileSafeKey(String cartKey) {
+        return cartKey.replaceAll("[^A-Za-z0-9_-]", "_");
     }
 
-    private void saveTransaction(String receipt) {
+    private void saveTransaction(Cart cart, String receipt) {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss");
-        String filename = TRANSACTION_DIR + "/receipt_" + sdf.format(new Date()) + ".txt";
+        String filename = TRANSACTION_DIR + "/receipt_" + toFileSafeKey(cart.getOwnerKey())
+                + "_" + sdf.format(new Date()) + ".txt";
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
             writer.write(receipt);
@@ -298,17 +422,21 @@ public class CartService {
         }
     }
 
-    public List<CartItem> getCartItems() {
-        return new ArrayList<>(cartItems);
+    public List<CartItem> getCartItems(String cartKey) {
+        return withCart(cartKey, Cart::getItems);
     }
 
-    public boolean isEmpty() {
-        return cartItems.isEmpty();
+    public boolean isEmpty(String cartKey) {
+        return withCart(cartKey, Cart::isEmpty);
     }
 
-    public synchronized void clearCart() {
-        cartItems.clear();
-        saveCartItems();
+    // Dropping the emptied cart deletes its file, so there is nothing left to save
+    public void clearCart(String cartKey) {
+        withCart(cartKey, cart -> {
+            cart.clear();
+            productService.releaseReservations(cart.getOwnerKey());
+            return null;
+        });
     }
 
     public ProductService getProductService() {
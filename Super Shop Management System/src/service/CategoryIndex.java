@@ -0,0 +1,79 @@
+package service;
+
+import model.Product;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Product ids grouped by category, with a running product count and stock
+ * total per category. Browsing a category reads only that category's ids,
+ * and the counts are kept up to date as products move or change stock.
+ */
+class CategoryIndex {
+    private static class Entry {
+        private final Postings productIds = new Postings();
+        // Sales of different products in the same category update it at the same time
+        private final LongAdder stockTotal = new LongAdder();
+    }
+
+    private static final int[] NO_PRODUCTS = new int[0];
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    void build(Collection<Product> products) {
+        entries.clear();
+        products.forEach(this::add);
+    }
+
+    void add(Product product) {
+        Entry entry = entries.computeIfAbsent(product.getCategoryId(), id -> new Entry());
+        entry.productIds.add(product.getId());
+        entry.stockTotal.add(product.getQuantity());
+    }
+
+    void remove(Product product) {
+        detach(product, product.getCategoryId());
+    }
+
+    void categoryChanged(Product product, int oldCategoryId) {
+        detach(product, oldCategoryId);
+        add(product);
+    }
+
+    void quantityChanged(Product product, int oldQuantity, int newQuantity) {
+        Entry entry = entries.get(product.getCategoryId());
+        if (entry != null) {
+            entry.stockTotal.add(newQuantity - oldQuantity);
+        }
+    }
+
+    /** Ids of the products in the category, ascending. */
+    int[] productIds(int categoryId) {
+        Entry entry = entries.get(categoryId);
+        return entry != null ? entry.productIds.toArray() : NO_PRODUCTS;
+    }
+
+    int productCount(int categoryId) {
+        Entry entry = entries.get(categoryId);
+        return entry != null ? entry.productIds.size() : 0;
+    }
+
+    long stockTotal(int categoryId) {
+        Entry entry = entries.get(categoryId);
+        return entry != null ? entry.stockTotal.sum() : 0;
+    }
+
+    private void detach(Product product, int categoryId) {
+        Entry entry = entries.get(categoryId);
+        if (entry == null) return;
+
+        entry.productIds.remove(product.getId());
+        entry.stockTotal.add(-product.getQuantity());
+        if (entry.productIds.isEmpty()) {
+            entries.remove(categoryId);
+        }
+    }
+}
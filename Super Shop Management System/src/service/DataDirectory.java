@@ -0,0 +1,25 @@
+package service;
+
+import java.io.File;
+
+/**
+ * Location of the data files. Defaults to {@code data} under the working
+ * directory; set the {@code supershop.dataDir} system property before the
+ * services are first used to point them somewhere else (benchmarks do this to
+ * work in a scratch directory).
+ */
+public final class DataDirectory {
+    public static final String PROPERTY = "supershop.dataDir";
+    private static final String DEFAULT_PATH = "data";
+
+    private DataDirectory() {
+    }
+
+    public static String path() {
+        return System.getProperty(PROPERTY, DEFAULT_PATH);
+    }
+
+    public static String resolve(String name) {
+        return new File(path(), name).getPath();
+    }
+}
@@ -0,0 +1,81 @@
+package service;
+
+import util.BinaryReader;
+import util.BinaryWriter;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Reads and writes the binary data files. Saves go to a temporary sibling that
+ * is synced to disk and then moved over the old file, so a crash or power loss
+ * mid-save leaves the previous version in place. Files written with Java
+ * serialization by earlier versions are recognised by their stream header, so
+ * callers can read them one last time and rewrite them in the binary format.
+ */
+final class DataFiles {
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    interface Body {
+        void write(BinaryWriter out) throws IOException;
+    }
+
+    interface Parser<T> {
+        T read(BinaryReader in, int version) throws IOException;
+    }
+
+    interface LegacyParser<T> {
+        T read(ObjectInputStream in) throws IOException, ClassNotFoundException;
+    }
+
+    private DataFiles() {
+    }
+
+    static void write(Path file, int magic, int version, Body body) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             BinaryWriter out = new BinaryWriter(Channels.newOutputStream(channel))) {
+            out.writeHeader(magic, version);
+            body.write(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    // Makes the rename itself durable. Not every platform lets a directory be opened for this; there it is skipped.
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // The file contents are synced either way
+        }
+    }
+
+    static <T> T read(Path file, int magic, Parser<T> parser) throws IOException {
+        try (BinaryReader in = new BinaryReader(Files.newInputStream(file))) {
+            return parser.read(in, in.readHeader(magic));
+        }
+    }
+
+    static boolean isJavaSerialized(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readUnsignedShort() == JAVA_SERIALIZATION_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /** Reads a file written by {@code ObjectOutputStream}; {@code parser} pulls the objects out. */
+    static <T> T readJavaSerialized(Path file, LegacyParser<T> parser) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return parser.read(in);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable legacy file " + file.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package service;
+
+import model.Product;
+
+import java.util.*;
+
+/**
+ * Trigram index over normalized product names for typo-tolerant lookups.
+ * Each name is padded and split into overlapping three-character grams, and
+ * every gram keeps a posting list of the products containing it. One edit
+ * changes at most three grams, so a name within {@code k} edits of the query
+ * must share most of the query's grams; that means it appears in at least one
+ * of the query's rarest few gram lists. Only those short lists are read, and
+ * each candidate is then checked with an edit distance computation that gives
+ * up once the budget is exceeded. Names are also grouped by length, for short
+ * queries whose grams say too little.
+ */
+class FuzzyNameIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final char PADDING = '\0';
+    private static final int SHORT_QUERY_LENGTH = 5;
+
+    private record Match(int distance, int id) {
+    }
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, String> indexedNames = new HashMap<>();
+    private final Map<Integer, Postings> idsByLength = new HashMap<>();
+
+    void build(Collection<Product> products) {
+        postings.clear();
+        indexedNames.clear();
+        idsByLength.clear();
+        products.forEach(this::add);
+    }
+
+    void add(Product product) {
+        String name = NamePrefixIndex.normalize(product.getName());
+        String previous = indexedNames.put(product.getId(), name);
+        if (name.equals(previous)) return;
+        if (previous != null) {
+            unlink(product.getId(), previous);
+        }
+        for (String gram : grams(name)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(product.getId());
+        }
+        idsByLength.computeIfAbsent(name.length(), length -> new Postings()).add(product.getId());
+    }
+
+    /** Re-files a product whose name may have changed since it was indexed. */
+    void update(Product product) {
+        add(product);
+    }
+
+    void remove(int productId) {
+        String name = indexedNames.remove(productId);
+        if (name != null) {
+            unlink(productId, name);
+        }
+    }
+
+    /**
+     * Ids of up to {@code limit} products whose normalized name is within
+     * {@code maxDistance} edits of {@code query}, closest first. Queries
+     * shorter than five characters allow one edit at most: two edits turn
+     * "milk" into most four-letter names.
+     */
+    int[] search(String query, int maxDistance, int limit) {
+        String key = NamePrefixIndex.normalize(query);
+        int budget = key.length() < SHORT_QUERY_LENGTH ? Math.min(maxDistance, 1) : maxDistance;
+        List<Match> matches = new ArrayList<>();
+        for (int id : candidates(key, budget)) {
+            int distance = boundedEditDistance(key, indexedNames.get(id), budget);
+            if (distance <= budget) {
+                matches.add(new Match(distance, id));
+            }
+        }
+
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparingInt(Match::id));
+        int[] result = new int[Math.min(limit, matches.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matches.get(i).id();
+        }
+        return result;
+    }
+
+    /*
+     * A query of n characters has n + 2 padded grams and k edits destroy at most
+     * 3k of them, so a match keeps at least n + 2 - 3k gram positions. Counted
+     * over distinct grams that is at least `required`, and any name keeping that
+     * many of the d distinct grams must contain one of the d - required + 1
+     * rarest. Short queries with a large budget ("milk" with two edits) give no
+     * such guarantee; a match there is at most k characters longer or shorter
+     * than the query, so only the names of those lengths are read.
+     */
+    private int[] candidates(String key, int maxDistance) {
+        List<String> queryGrams = grams(key);
+        Set<String> distinctGrams = new HashSet<>(queryGrams);
+        int required = queryGrams.size() - GRAM_LENGTH * maxDistance
+                - (queryGrams.size() - distinctGrams.size());
+        List<Postings> lists = new ArrayList<>();
+        if (required <= 0) {
+            for (int length = Math.max(0, key.length() - maxDistance); length <= key.length() + maxDistance; length++) {
+                Postings list = idsByLength.get(length);
+                if (list != null) lists.add(list);
+            }
+        } else {
+            for (String gram : distinctGrams) {
+                Postings list = postings.get(gram);
+                lists.add(list != null ? list : new Postings());
+            }
+            lists.sort(Comparator.comparingInt(Postings::size));
+            lists = lists.subList(0, distinctGrams.size() - required + 1);
+        }
+
+        int total = 0;
+        for (Postings list : lists) {
+            total += list.size();
+        }
+        int[] ids = new int[total];
+        int count = 0;
+        for (Postings list : lists) {
+            for (int j = 0; j < list.size(); j++) {
+                ids[count++] = list.get(j);
+            }
+        }
+
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    private void unlink(int productId, String name) {
+        for (String gram : grams(name)) {
+            Postings list = postings.get(gram);
+            if (list == null) continue;
+            list.remove(productId);
+            if (list.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+        Postings sameLength = idsByLength.get(name.length());
+        if (sameLength != null) {
+            sameLength.remove(productId);
+            if (sameLength.isEmpty()) {
+                idsByLength.remove(name.length());
+            }
+        }
+    }
+
+    private static List<String> grams(String name) {
+        String padded = PADDING + "" + PADDING + name + PADDING + PADDING;
+        List<String> grams = new ArrayList<>(padded.length() - GRAM_LENGTH + 1);
+        for (int i = 0; i + GRAM_LENGTH <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    /**
+     * Levenshtein distance between {@code a} and {@code b}, or
+     * {@code maxDistance + 1} as soon as it is known to exceed the budget.
+     * Only cells within {@code maxDistance} of the diagonal are computed.
+     */
+    static int boundedEditDistance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) return maxDistance + 1;
+
+        int over = maxDistance + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = Math.min(j, over);
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - maxDistance);
+            int to = Math.min(b.length(), i + maxDistance);
+            current[0] = Math.min(i, over);
+            if (from > 1) current[from - 1] = over;
+
+            int rowMinimum = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int substitution = previous[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                int deletion = (j < i + maxDistance ? previous[j] : over) + 1;
+                int insertion = current[j - 1] + 1;
+                current[j] = Math.min(over, Math.min(substitution, Math.min(deletion, insertion)));
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > maxDistance) return over;
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
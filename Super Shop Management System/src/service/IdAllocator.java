@@ -0,0 +1,99 @@
+package service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic id sequence shared by all threads. Ids are handed out with a single
+ * atomic increment; only when the current block runs out does a thread take a
+ * lock to reserve the next block by durably saving a new high-water mark. After
+ * a restart the sequence resumes at the saved mark, so an id is never issued
+ * twice even if the process died halfway through a block (the rest of that
+ * block is simply skipped).
+ */
+class IdAllocator {
+    static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private final Path highWaterMarkFile;
+    private final int blockSize;
+    private final AtomicLong nextId;
+    private volatile long reservedUpTo;
+
+    IdAllocator(String highWaterMarkFile) {
+        this(highWaterMarkFile, DEFAULT_BLOCK_SIZE);
+    }
+
+    IdAllocator(String highWaterMarkFile, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.highWaterMarkFile = Paths.get(highWaterMarkFile);
+        this.blockSize = blockSize;
+        long highWaterMark = readHighWaterMark();
+        this.nextId = new AtomicLong(highWaterMark);
+        this.reservedUpTo = highWaterMark;
+    }
+
+    long next() {
+        long id = nextId.getAndIncrement();
+        if (id >= reservedUpTo) {
+            reserveThrough(id);
+        }
+        return id;
+    }
+
+    /** Makes sure every id handed out from now on is greater than {@code id}. */
+    void ensureAbove(long id) {
+        long next = nextId.accumulateAndGet(id + 1, Math::max);
+        if (next > reservedUpTo) {
+            reserveThrough(next - 1);
+        }
+    }
+
+    private synchronized void reserveThrough(long id) {
+        long limit = reservedUpTo;
+        if (id < limit) return;
+
+        while (id >= limit) {
+            limit += blockSize;
+        }
+        writeHighWaterMark(limit);
+        reservedUpTo = limit;
+    }
+
+    private long readHighWaterMark() {
+        if (!Files.exists(highWaterMarkFile)) return 1;
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(highWaterMarkFile))) {
+            return Math.max(1, in.readLong());
+        } catch (IOException e) {
+            // Owners re-seed with ensureAbove from their own data, so starting low is safe
+            System.err.println("❌ Error reading id high-water mark " + highWaterMarkFile + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Written to a temporary file, synced, then renamed over the old mark so a crash leaves one or the other
+    private void writeHighWaterMark(long highWaterMark) {
+        Path temp = highWaterMarkFile.resolveSibling(highWaterMarkFile.getFileName() + ".tmp");
+        try {
+            Path parent = highWaterMarkFile.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+                out.writeLong(highWaterMark);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, highWaterMarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reserve ids in " + highWaterMarkFile, e);
+        }
+    }
+}
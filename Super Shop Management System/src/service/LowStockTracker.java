@@ -0,0 +1,151 @@
+package service;
+
+import model.Product;
+import model.StockAlert;
+import model.StockAlert.Level;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the ids of low-stock and sold-out products up to date as quantities
+ * change, so nobody has to scan the catalog to find them. A product is low on
+ * stock when it is in stock and at or under its threshold (see
+ * {@link Product#isLowStock}); each product uses its own threshold if one is
+ * set, otherwise the default. Every time a product moves between OK, low and
+ * out of stock an alert goes to the subscribers.
+ */
+class LowStockTracker {
+    private final Postings lowStockIds = new Postings();
+    private final Postings outOfStockIds = new Postings();
+    private final Map<Integer, Integer> productThresholds = new HashMap<>();
+    private final List<Consumer<StockAlert>> subscribers = new CopyOnWriteArrayList<>();
+    private int defaultThreshold;
+
+    LowStockTracker(int defaultThreshold) {
+        this.defaultThreshold = defaultThreshold;
+    }
+
+    /** Recomputes every product's level without raising alerts. */
+    synchronized void build(Collection<Product> products) {
+        lowStockIds.clear();
+        outOfStockIds.clear();
+        for (Product product : products) {
+            file(product.getId(), levelOf(product));
+        }
+    }
+
+    /** Re-checks one product after its quantity or threshold changed. */
+    void update(Product product) {
+        StockAlert alert;
+        synchronized (this) {
+            Level previous = levelOf(product.getId());
+            Level current = levelOf(product);
+            if (previous == current) return;
+
+            file(product.getId(), current);
+            alert = new StockAlert(product.getId(), product.getName(), product.getQuantity(),
+                    thresholdFor(product.getId()), previous, current);
+        }
+        subscribers.forEach(subscriber -> subscriber.accept(alert));
+    }
+
+    /**
+     * Raises the alert for a quantity change on a product that is not tracked
+     * because the catalog has not been loaded yet. The level it moved from is
+     * worked out from {@code oldQuantity}; nothing is filed.
+     */
+    void quantityChanged(Product product, int oldQuantity) {
+        StockAlert alert;
+        synchronized (this) {
+            int threshold = thresholdFor(product.getId());
+            Level previous = levelOf(oldQuantity, threshold);
+            Level current = levelOf(product.getQuantity(), threshold);
+            if (previous == current) return;
+
+            alert = new StockAlert(product.getId(), product.getName(), product.getQuantity(),
+                    threshold, previous, current);
+        }
+        subscribers.forEach(subscriber -> subscriber.accept(alert));
+    }
+
+    synchronized void remove(int productId) {
+        lowStockIds.remove(productId);
+        outOfStockIds.remove(productId);
+    }
+
+    void subscribe(Consumer<StockAlert> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    void unsubscribe(Consumer<StockAlert> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    synchronized int[] lowStockIds() {
+        return lowStockIds.toArray();
+    }
+
+    synchronized int[] outOfStockIds() {
+        return outOfStockIds.toArray();
+    }
+
+    synchronized int getDefaultThreshold() {
+        return defaultThreshold;
+    }
+
+    synchronized void setDefaultThreshold(int threshold) {
+        defaultThreshold = threshold;
+    }
+
+    synchronized int thresholdFor(int productId) {
+        return productThresholds.getOrDefault(productId, defaultThreshold);
+    }
+
+    synchronized void setThreshold(int productId, int threshold) {
+        productThresholds.put(productId, threshold);
+    }
+
+    synchronized void clearThreshold(int productId) {
+        productThresholds.remove(productId);
+    }
+
+    synchronized Map<Integer, Integer> getProductThresholds() {
+        return new HashMap<>(productThresholds);
+    }
+
+    synchronized void setProductThresholds(Map<Integer, Integer> thresholds) {
+        productThresholds.clear();
+        productThresholds.putAll(thresholds);
+    }
+
+    private Level levelOf(Product product) {
+        if (!product.isInStock()) return Level.OUT_OF_STOCK;
+        return product.isLowStock(thresholdFor(product.getId())) ? Level.LOW : Level.OK;
+    }
+
+    private static Level levelOf(int quantity, int threshold) {
+        if (quantity <= 0) return Level.OUT_OF_STOCK;
+        return quantity <= threshold ? Level.LOW : Level.OK;
+    }
+
+    private Level levelOf(int productId) {
+        if (lowStockIds.contains(productId)) return Level.LOW;
+        if (outOfStockIds.contains(productId)) return Level.OUT_OF_STOCK;
+        return Level.OK;
+    }
+
+    private void file(int productId, Level level) {
+        lowStockIds.remove(productId);
+        outOfStockIds.remove(productId);
+        if (level == Level.LOW) {
+            lowStockIds.add(productId);
+        } else if (level == Level.OUT_OF_STOCK) {
+            outOfStockIds.add(productId);
+        }
+    }
+}
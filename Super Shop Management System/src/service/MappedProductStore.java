@@ -0,0 +1,542 @@
+package service;
+
+import model.Money;
+import model.Product;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the catalog in memory-mapped files rather than on the heap, so opening
+ * it costs the same whatever its size. Products are fixed-width records in
+ * {@code catalog.map}; names live in a separate append-only string heap that
+ * the records point into, and {@code catalog.ids} is an open-addressing table
+ * from product id to record slot. Stock and price changes overwrite their
+ * field in place. Deleted records and replaced names are left behind until
+ * they outweigh the live data, then everything is rewritten.
+ * <p>
+ * Writes reach the page cache at once, so they survive the process dying, and
+ * the mapped files are synced once per persistence window, so losing power
+ * costs at most that window; the log-based {@link ProductJournal} gives the
+ * same guarantee.
+ */
+class MappedProductStore implements ProductStore {
+    private static final int MAGIC = 0x504D4150;     // "PMAP"
+    private static final int IDS_MAGIC = 0x50494458; // "PIDX"
+    private static final int VERSION = 1;
+    private static final String MAP_FILE = "catalog.map";
+    private static final String IDS_FILE = "catalog.ids";
+    private static final String NAMES_PREFIX = "catalog.names.";
+
+    // catalog.map header
+    private static final int HEADER_BYTES = 64;
+    private static final int H_GENERATION = 8;
+    private static final int H_RECORD_COUNT = 16;
+    private static final int H_LIVE_COUNT = 20;
+    private static final int H_NAMES_LENGTH = 24;
+    private static final int H_DEAD_NAME_BYTES = 32;
+
+    // One record
+    private static final int RECORD_BYTES = 48;
+    private static final int R_LIVE = 0;
+    private static final int R_ID = 4;
+    private static final int R_CATEGORY = 8;
+    private static final int R_QUANTITY = 12;
+    private static final int R_PRICE = 16;
+    private static final int R_DATE_ADDED = 24;
+    private static final int R_NAME_OFFSET = 32;
+    private static final int R_NAME_LENGTH = 40;
+
+    // catalog.ids header; entries are (id, slot + 1) pairs and id 0 marks an empty entry
+    private static final int IDS_HEADER_BYTES = 32;
+    private static final int I_CAPACITY = 4;
+    private static final int I_GENERATION = 8;
+    private static final int I_INDEXED_RECORDS = 16;
+    private static final int I_SIZE = 20;
+    private static final int ENTRY_BYTES = 8;
+    private static final int EMPTY = 0;
+
+    private static final int INITIAL_RECORDS = 1024;
+    private static final int INITIAL_NAME_BYTES = 1 << 16;
+    private static final int MIN_ID_CAPACITY = 2048;
+    private static final int COMPACT_MIN_GARBAGE = 1000;
+
+    private final Path dataDir;
+    private final Path mapFile;
+    private final Path idsFile;
+    private final PersistenceScheduler.Store mapSync;
+    private FileChannel mapChannel;
+    private FileChannel namesChannel;
+    private FileChannel idsChannel;
+    private MappedByteBuffer records;
+    private MappedByteBuffer names;
+    private MappedByteBuffer ids;
+    private int recordCapacity;
+    private int idCapacity;
+
+    MappedProductStore(Path dataDir) {
+        this.dataDir = dataDir;
+        this.mapFile = dataDir.resolve(MAP_FILE);
+        this.idsFile = dataDir.resolve(IDS_FILE);
+        this.mapSync = PersistenceScheduler.shared().register("product map", this::sync);
+    }
+
+    /**
+     * Maps the store, creating it if there is none yet. Only the tail of the id
+     * table that a crash may have left unwritten is brought up to date, so this
+     * does not depend on the size of the catalog.
+     *
+     * @return true if the store was created by this call
+     */
+    synchronized boolean open() throws IOException {
+        boolean created = !Files.exists(mapFile) || Files.size(mapFile) == 0;
+        mapChannel = FileChannel.open(mapFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (created) {
+            mapRecords(INITIAL_RECORDS);
+            records.putInt(0, MAGIC).putInt(4, VERSION).putLong(H_GENERATION, 1);
+        } else {
+            mapRecords((int) ((mapChannel.size() - HEADER_BYTES) / RECORD_BYTES));
+            if (records.getInt(0) != MAGIC || records.getInt(4) != VERSION) {
+                throw new IOException("Not a product store: " + mapFile);
+            }
+        }
+
+        namesChannel = FileChannel.open(namesFile(generation()),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        names = namesChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(namesChannel.size(), Math.max(namesLength(), INITIAL_NAME_BYTES)));
+
+        idsChannel = FileChannel.open(idsFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (idsChannel.size() < IDS_HEADER_BYTES) {
+            rebuildIds(idCapacityFor(liveCount()));
+            return created;
+        }
+        ids = idsChannel.map(FileChannel.MapMode.READ_WRITE, 0, idsChannel.size());
+        idCapacity = ids.getInt(I_CAPACITY);
+        if (ids.getInt(0) != IDS_MAGIC || ids.getLong(I_GENERATION) != generation()
+                || ids.getInt(I_INDEXED_RECORDS) > recordCount()
+                || idsChannel.size() < IDS_HEADER_BYTES + (long) idCapacity * ENTRY_BYTES) {
+            rebuildIds(idCapacityFor(liveCount()));
+        } else {
+            for (int slot = ids.getInt(I_INDEXED_RECORDS); slot < recordCount(); slot++) {
+                if (isLive(slot)) indexId(records.getInt(recordOffset(slot) + R_ID), slot);
+            }
+            ids.putInt(I_INDEXED_RECORDS, recordCount());
+        }
+        return created;
+    }
+
+    synchronized Product read(int productId) {
+        int slot = slotOf(productId);
+        return slot < 0 ? null : decode(slot);
+    }
+
+    synchronized boolean contains(int productId) {
+        return slotOf(productId) >= 0;
+    }
+
+    /** Reads every live record, in the order they were first stored. */
+    @Override
+    public synchronized List<Product> load() {
+        List<Product> products = new ArrayList<>(liveCount());
+        for (int slot = 0; slot < recordCount(); slot++) {
+            if (isLive(slot)) products.add(decode(slot));
+        }
+        return products;
+    }
+
+    @Override
+    public synchronized boolean recordPut(Product product) {
+        try {
+            byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+            int slot = slotOf(product.getId());
+            long nameOffset;
+            if (slot >= 0 && nameEquals(slot, name)) {
+                nameOffset = records.getLong(recordOffset(slot) + R_NAME_OFFSET);
+            } else {
+                if (slot >= 0) addDeadNameBytes(records.getInt(recordOffset(slot) + R_NAME_LENGTH));
+                nameOffset = appendName(name);
+            }
+
+            if (slot >= 0) {
+                writeRecord(slot, product, nameOffset, name.length);
+                mapSync.markDirty();
+                return true;
+            }
+
+            // The record is written before the count covers it, so a crash never exposes half of one
+            slot = recordCount();
+            if (slot == recordCapacity) {
+                mapRecords(Math.max(recordCapacity, INITIAL_RECORDS / 2) * 2);
+            }
+            writeRecord(slot, product, nameOffset, name.length);
+            records.putInt(H_RECORD_COUNT, slot + 1);
+            records.putInt(H_LIVE_COUNT, liveCount() + 1);
+            indexId(product.getId(), slot);
+            ids.putInt(I_INDEXED_RECORDS, slot + 1);
+            mapSync.markDirty();
+            return true;
+        } catch (IOException e) {
+            System.err.println("❌ Error saving products: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean recordQuantity(int productId, int quantity) {
+        int slot = slotOf(productId);
+        if (slot < 0) return false;
+
+        records.putInt(recordOffset(slot) + R_QUANTITY, quantity);
+        mapSync.markDirty();
+        return true;
+    }
+
+    /** Every product is checked before any quantity is written. */
+    @Override
+    public synchronized boolean recordQuantities(Map<Integer, Integer> quantities) {
+        int[] slots = new int[quantities.size()];
+        int i = 0;
+        for (int productId : quantities.keySet()) {
+            slots[i] = slotOf(productId);
+            if (slots[i++] < 0) return false;
+        }
+
+        i = 0;
+        for (int quantity : quantities.values()) {
+            records.putInt(recordOffset(slots[i++]) + R_QUANTITY, quantity);
+        }
+        mapSync.markDirty();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean recordPrice(int productId, Money price) {
+        int slot = slotOf(productId);
+        if (slot < 0) return false;
+
+        records.putLong(recordOffset(slot) + R_PRICE, price.getMinorUnits());
+        mapSync.markDirty();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean recordDelete(int productId) {
+        int slot = slotOf(productId);
+        if (slot < 0) return false;
+
+        records.put(recordOffset(slot) + R_LIVE, (byte) 0);
+        records.putInt(H_LIVE_COUNT, liveCount() - 1);
+        addDeadNameBytes(records.getInt(recordOffset(slot) + R_NAME_LENGTH));
+        unindexId(productId);
+        mapSync.markDirty();
+        return true;
+    }
+
+    /**
+     * Rewrites the store once deleted records or replaced names take up more
+     * room than the live ones. The catalog is read back from the store itself,
+     * so {@code catalog} is never called and never forces a full load.
+     */
+    @Override
+    public synchronized void compactIfNeeded(Supplier<List<Product>> catalog) {
+        if (needsCompaction()) {
+            writeSnapshot(load());
+        }
+    }
+
+    @Override
+    public synchronized boolean needsCompaction() {
+        int deadRecords = recordCount() - liveCount();
+        long deadNameBytes = records.getLong(H_DEAD_NAME_BYTES);
+        return (deadRecords > COMPACT_MIN_GARBAGE && deadRecords > liveCount())
+                || (deadNameBytes > COMPACT_MIN_GARBAGE && deadNameBytes > namesLength() - deadNameBytes);
+    }
+
+    /**
+     * Replaces the whole store with {@code products}. The new records and
+     * string heap are written to fresh files and swapped in with one rename of
+     * {@code catalog.map}. Both files are synced before the rename and the
+     * directory after it, so a crash or power loss leaves either the old store
+     * or the new one.
+     */
+    @Override
+    public synchronized boolean writeSnapshot(List<Product> products) {
+        long generation = generation() + 1;
+        Path namesFile = namesFile(generation);
+        Path temp = mapFile.resolveSibling(MAP_FILE + ".tmp");
+        try {
+            long namesLength = 0;
+            try (FileChannel recordChannel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel nameChannel = FileChannel.open(namesFile, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream recordOut = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(recordChannel)));
+                OutputStream nameOut = new BufferedOutputStream(Channels.newOutputStream(nameChannel));
+                recordOut.writeInt(MAGIC);
+                recordOut.writeInt(VERSION);
+                recordOut.writeLong(generation);
+                recordOut.writeInt(products.size());
+                recordOut.writeInt(products.size());
+                recordOut.writeLong(0); // names length, patched below
+                recordOut.write(new byte[HEADER_BYTES - H_DEAD_NAME_BYTES]);
+
+                for (Product product : products) {
+                    byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+                    nameOut.write(name);
+                    recordOut.writeByte(1);
+                    recordOut.write(new byte[R_ID - 1]);
+                    recordOut.writeInt(product.getId());
+                    recordOut.writeInt(product.getCategoryId());
+                    recordOut.writeInt(product.getQuantity());
+                    recordOut.writeLong(product.getPriceMinor());
+                    recordOut.writeLong(product.getDateAdded().getTime());
+                    recordOut.writeLong(namesLength);
+                    recordOut.writeInt(name.length);
+                    recordOut.writeInt(0);
+                    namesLength += name.length;
+                }
+                recordOut.flush();
+                nameOut.flush();
+                recordChannel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, namesLength), H_NAMES_LENGTH);
+                recordChannel.force(true);
+                nameChannel.force(true);
+            }
+
+            Path oldNames = namesFile(generation());
+            close();
+            try {
+                Files.move(temp, mapFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                DataFiles.syncDirectory(dataDir);
+                Files.deleteIfExists(oldNames);
+            } finally {
+                // If the move failed this maps the old store again, so later calls keep working
+                open();
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("❌ Error saving products: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // A mapping outlives its channel, so buffers swapped out meanwhile can still be synced
+    private void sync() {
+        MappedByteBuffer[] buffers;
+        synchronized (this) {
+            buffers = new MappedByteBuffer[] {records, names, ids};
+        }
+        for (MappedByteBuffer buffer : buffers) {
+            if (buffer != null) buffer.force();
+        }
+    }
+
+    synchronized void close() throws IOException {
+        for (Closeable channel : new Closeable[] {mapChannel, namesChannel, idsChannel}) {
+            if (channel != null) channel.close();
+        }
+    }
+
+    private Product decode(int slot) {
+        int offset = recordOffset(slot);
+        byte[] name = new byte[records.getInt(offset + R_NAME_LENGTH)];
+        names.get(Math.toIntExact(records.getLong(offset + R_NAME_OFFSET)), name);
+        return new Product(records.getInt(offset + R_ID),
+                records.getInt(offset + R_CATEGORY),
+                new String(name, StandardCharsets.UTF_8),
+                Money.ofMinor(records.getLong(offset + R_PRICE)),
+                records.getInt(offset + R_QUANTITY),
+                new Date(records.getLong(offset + R_DATE_ADDED)));
+    }
+
+    // The live flag goes in last, after every other field of the record
+    private void writeRecord(int slot, Product product, long nameOffset, int nameLength) {
+        int offset = recordOffset(slot);
+        records.putInt(offset + R_ID, product.getId());
+        records.putInt(offset + R_CATEGORY, product.getCategoryId());
+        records.putInt(offset + R_QUANTITY, product.getQuantity());
+        records.putLong(offset + R_PRICE, product.getPriceMinor());
+        records.putLong(offset + R_DATE_ADDED, product.getDateAdded().getTime());
+        records.putLong(offset + R_NAME_OFFSET, nameOffset);
+        records.putInt(offset + R_NAME_LENGTH, nameLength);
+        records.put(offset + R_LIVE, (byte) 1);
+    }
+
+    private boolean nameEquals(int slot, byte[] name) {
+        int offset = recordOffset(slot);
+        if (records.getInt(offset + R_NAME_LENGTH) != name.length) return false;
+
+        int start = Math.toIntExact(records.getLong(offset + R_NAME_OFFSET));
+        for (int i = 0; i < name.length; i++) {
+            if (names.get(start + i) != name[i]) return false;
+        }
+        return true;
+    }
+
+    private long appendName(byte[] name) throws IOException {
+        long offset = namesLength();
+        long needed = offset + name.length;
+        if (needed > names.capacity()) {
+            if (needed > Integer.MAX_VALUE) {
+                throw new IOException("Product name heap is full");
+            }
+            long size = Math.min(Math.max(needed, (long) names.capacity() * 2), Integer.MAX_VALUE);
+            names = namesChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        names.put((int) offset, name);
+        records.putLong(H_NAMES_LENGTH, needed);
+        return offset;
+    }
+
+    private void addDeadNameBytes(int bytes) {
+        records.putLong(H_DEAD_NAME_BYTES, records.getLong(H_DEAD_NAME_BYTES) + bytes);
+    }
+
+    private void mapRecords(int capacity) throws IOException {
+        long size = HEADER_BYTES + (long) capacity * RECORD_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Product store is full");
+        }
+        records = mapChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        recordCapacity = capacity;
+    }
+
+    private int slotOf(int productId) {
+        if (productId <= 0) return -1;
+
+        int mask = idCapacity - 1;
+        int entry = ProductIdIndex.hash(productId) & mask;
+        while (true) {
+            int position = entryOffset(entry);
+            int key = ids.getInt(position);
+            if (key == EMPTY) return -1;
+            if (key == productId) {
+                int slot = ids.getInt(position + 4) - 1;
+                // An entry can outlive its record if a crash cut a delete short
+                return isLive(slot) && records.getInt(recordOffset(slot) + R_ID) == productId ? slot : -1;
+            }
+            entry = (entry + 1) & mask;
+        }
+    }
+
+    private void indexId(int productId, int slot) throws IOException {
+        if ((ids.getInt(I_SIZE) + 1) * 2 > idCapacity) {
+            rebuildIds(idCapacity * 2);
+            if (slotOf(productId) == slot) return;
+        }
+
+        int mask = idCapacity - 1;
+        int entry = ProductIdIndex.hash(productId) & mask;
+        while (true) {
+            int position = entryOffset(entry);
+            int key = ids.getInt(position);
+            if (key == productId) {
+                ids.putInt(position + 4, slot + 1);
+                return;
+            }
+            if (key == EMPTY) {
+                ids.putInt(position + 4, slot + 1);
+                ids.putInt(position, productId);
+                ids.putInt(I_SIZE, ids.getInt(I_SIZE) + 1);
+                return;
+            }
+            entry = (entry + 1) & mask;
+        }
+    }
+
+    // Backward-shift deletion, as in ProductIdIndex, so probe chains stay intact without tombstones
+    private void unindexId(int productId) {
+        int mask = idCapacity - 1;
+        int entry = ProductIdIndex.hash(productId) & mask;
+        while (true) {
+            int key = ids.getInt(entryOffset(entry));
+            if (key == EMPTY) return;
+            if (key == productId) break;
+            entry = (entry + 1) & mask;
+        }
+
+        int last = entry;
+        entry = (entry + 1) & mask;
+        while (true) {
+            int key = ids.getInt(entryOffset(entry));
+            if (key == EMPTY) break;
+
+            int home = ProductIdIndex.hash(key) & mask;
+            boolean movable = last <= entry
+                    ? (home <= last || home > entry)
+                    : (home <= last && home > entry);
+            if (movable) {
+                ids.putLong(entryOffset(last), ids.getLong(entryOffset(entry)));
+                last = entry;
+            }
+            entry = (entry + 1) & mask;
+        }
+        ids.putLong(entryOffset(last), 0);
+        ids.putInt(I_SIZE, ids.getInt(I_SIZE) - 1);
+    }
+
+    // Scans every record, so it only runs when the table has to grow or does not match the records
+    private void rebuildIds(int capacity) throws IOException {
+        long size = IDS_HEADER_BYTES + (long) capacity * ENTRY_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Product id table is full");
+        }
+        ids = idsChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, idsChannel.size()));
+        idCapacity = capacity;
+        ids.putInt(I_INDEXED_RECORDS, 0);
+        for (int entry = 0; entry < capacity; entry++) {
+            ids.putLong(entryOffset(entry), 0);
+        }
+        ids.putInt(0, IDS_MAGIC).putInt(I_CAPACITY, capacity).putLong(I_GENERATION, generation()).putInt(I_SIZE, 0);
+
+        for (int slot = 0; slot < recordCount(); slot++) {
+            if (isLive(slot)) indexId(records.getInt(recordOffset(slot) + R_ID), slot);
+        }
+        ids.putInt(I_INDEXED_RECORDS, recordCount());
+    }
+
+    private static int idCapacityFor(int liveCount) {
+        int needed = Math.max(liveCount * 2 + 2, MIN_ID_CAPACITY);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    private boolean isLive(int slot) {
+        return records.get(recordOffset(slot) + R_LIVE) != 0;
+    }
+
+    private long generation() {
+        return records.getLong(H_GENERATION);
+    }
+
+    private int recordCount() {
+        return records.getInt(H_RECORD_COUNT);
+    }
+
+    private int liveCount() {
+        return records.getInt(H_LIVE_COUNT);
+    }
+
+    private long namesLength() {
+        return records.getLong(H_NAMES_LENGTH);
+    }
+
+    private Path namesFile(long generation) {
+        return dataDir.resolve(NAMES_PREFIX + generation);
+    }
+
+    private static int recordOffset(int slot) {
+        return HEADER_BYTES + slot * RECORD_BYTES;
+    }
+
+    private static int entryOffset(int entry) {
+        return IDS_HEADER_BYTES + entry * ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,167 @@
+package service;
+
+import model.Product;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Product names in case-folded, sorted order for prefix (typeahead) lookups.
+ * Entries are kept in two parallel arrays ordered by name then id, so every
+ * name starting with a prefix sits in one contiguous run found by binary
+ * search. The name each product was indexed under is remembered, so a product
+ * renamed in place can still be found and moved.
+ */
+class NamePrefixIndex {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String[] names;
+    private int[] ids;
+    private int size;
+    private final Map<Integer, String> indexedNames;
+
+    NamePrefixIndex() {
+        this.names = new String[DEFAULT_CAPACITY];
+        this.ids = new int[DEFAULT_CAPACITY];
+        this.indexedNames = new HashMap<>();
+    }
+
+    static String normalize(String name) {
+        if (name == null) return "";
+
+        String trimmed = name.trim().toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(trimmed.length());
+        boolean lastWasSpace = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!lastWasSpace) normalized.append(' ');
+                lastWasSpace = true;
+            } else {
+                normalized.append(c);
+                lastWasSpace = false;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /** Replaces the contents with the given products, sorting once. */
+    void build(Collection<Product> products) {
+        Integer[] order = new Integer[products.size()];
+        String[] newNames = new String[Math.max(products.size(), DEFAULT_CAPACITY)];
+        int[] newIds = new int[newNames.length];
+
+        int count = 0;
+        for (Product product : products) {
+            newNames[count] = normalize(product.getName());
+            newIds[count] = product.getId();
+            order[count] = count;
+            count++;
+        }
+        Arrays.sort(order, (a, b) -> compare(newNames[a], newIds[a], newNames[b], newIds[b]));
+
+        names = new String[newNames.length];
+        ids = new int[newNames.length];
+        indexedNames.clear();
+        for (int i = 0; i < count; i++) {
+            names[i] = newNames[order[i]];
+            ids[i] = newIds[order[i]];
+            indexedNames.put(ids[i], names[i]);
+        }
+        size = count;
+    }
+
+    void add(Product product) {
+        String name = normalize(product.getName());
+        int id = product.getId();
+        if (indexedNames.putIfAbsent(id, name) != null) {
+            update(product);
+            return;
+        }
+
+        ensureCapacity(size + 1);
+        int position = lowerBound(name, id);
+        System.arraycopy(names, position, names, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        names[position] = name;
+        ids[position] = id;
+        size++;
+    }
+
+    /** Re-files a product whose name may have changed since it was indexed. */
+    void update(Product product) {
+        String indexedName = indexedNames.get(product.getId());
+        if (indexedName != null && indexedName.equals(normalize(product.getName()))) return;
+
+        remove(product.getId());
+        add(product);
+    }
+
+    void remove(int productId) {
+        String name = indexedNames.remove(productId);
+        if (name == null) return;
+
+        int position = lowerBound(name, productId);
+        System.arraycopy(names, position + 1, names, position, size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        names[size] = null;
+    }
+
+    /**
+     * Ids of up to {@code limit} products whose normalized name starts with
+     * {@code prefix}, in name order.
+     */
+    int[] search(String prefix, int limit) {
+        String key = normalize(prefix);
+        int[] matches = new int[Math.min(limit, size)];
+        int count = 0;
+        for (int i = lowerBound(key, Integer.MIN_VALUE); i < size && count < matches.length; i++) {
+            if (!names[i].startsWith(key)) break;
+            matches[count++] = ids[i];
+        }
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    /** Lowest id among products with exactly this name, or 0 if there is none. */
+    int findExact(String name) {
+        String key = normalize(name);
+        int position = lowerBound(key, Integer.MIN_VALUE);
+        return position < size && names[position].equals(key) ? ids[position] : 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // First position whose entry is not less than (name, id)
+    private int lowerBound(String name, int id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(names[mid], ids[mid], name, id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= names.length) return;
+
+        int capacity = Math.max(needed, names.length << 1);
+        names = Arrays.copyOf(names, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+    }
+
+    private static int compare(String nameA, int idA, String nameB, int idB) {
+        int byName = nameA.compareTo(nameB);
+        return byName != 0 ? byName : Integer.compare(idA, idB);
+    }
+}
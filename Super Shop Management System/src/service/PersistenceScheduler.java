@@ -0,0 +1,147 @@
+package service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes data files in the background, in groups. A service registers each
+ * file it owns as a {@link Store} with the code that writes it, then marks the
+ * store dirty after a change instead of writing it. The first mark opens a
+ * window ({@value #DEFAULT_WINDOW_MILLIS} ms unless {@value #WINDOW_PROPERTY}
+ * is set); when the window closes, every store marked during it is written
+ * once, however many changes it saw. A crash loses at most one window of
+ * changes. Callers that need a change on disk before they carry on wait for
+ * the future {@link Store#markDirty} returns, or call {@link Store#flush}.
+ * A store whose write fails stays dirty and is tried again in the next
+ * window. Everything still dirty is written when the JVM shuts down.
+ */
+final class PersistenceScheduler {
+    static final String WINDOW_PROPERTY = "supershop.persistWindowMillis";
+    private static final long DEFAULT_WINDOW_MILLIS = 200;
+    private static final PersistenceScheduler SHARED =
+            new PersistenceScheduler(Long.getLong(WINDOW_PROPERTY, DEFAULT_WINDOW_MILLIS));
+
+    interface Writer {
+        /** Writes the store's current state. */
+        void write() throws IOException;
+    }
+
+    /** One file, or one group of files written together. */
+    final class Store {
+        private final String name;
+        private final Writer writer;
+        private CompletableFuture<Void> pending; // guarded by the scheduler; null while clean
+
+        private Store(String name, Writer writer) {
+            this.name = name;
+            this.writer = writer;
+        }
+
+        /**
+         * Schedules a write for the end of the current window.
+         *
+         * @return completes once a write that started after this call has finished,
+         *         or exceptionally if that write failed
+         */
+        CompletableFuture<Void> markDirty() {
+            return PersistenceScheduler.this.markDirty(this);
+        }
+
+        /**
+         * Writes the store now if it has unsaved changes and waits for that.
+         * Never call this while holding a lock the writer takes.
+         *
+         * @return false if the write failed
+         */
+        boolean flush() {
+            return write(this);
+        }
+    }
+
+    private final long windowMillis;
+    private final ScheduledExecutorService executor;
+    private final Set<Store> dirty = new LinkedHashSet<>();
+    private boolean windowOpen;
+
+    private PersistenceScheduler(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Persistence window cannot be negative");
+        }
+        this.windowMillis = windowMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "persistence-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushAll, "persistence-flush"));
+    }
+
+    /** The scheduler every service shares, so one window covers all of their files. */
+    static PersistenceScheduler shared() {
+        return SHARED;
+    }
+
+    Store register(String name, Writer writer) {
+        return new Store(name, writer);
+    }
+
+    /** Writes every dirty store now, on the caller's thread. */
+    void flushAll() {
+        List<Store> due;
+        synchronized (this) {
+            due = new ArrayList<>(dirty);
+        }
+        due.forEach(this::write);
+    }
+
+    private synchronized CompletableFuture<Void> markDirty(Store store) {
+        if (store.pending == null) {
+            store.pending = new CompletableFuture<>();
+            dirty.add(store);
+        }
+        if (!windowOpen) {
+            windowOpen = true;
+            executor.schedule(this::closeWindow, windowMillis, TimeUnit.MILLISECONDS);
+        }
+        return store.pending;
+    }
+
+    private void closeWindow() {
+        synchronized (this) {
+            windowOpen = false;
+        }
+        flushAll();
+    }
+
+    // Holding the store's monitor keeps two writes of the same file from overlapping
+    private boolean write(Store store) {
+        synchronized (store) {
+            CompletableFuture<Void> done;
+            synchronized (this) {
+                done = store.pending;
+                if (done == null) return true; // written meanwhile
+                store.pending = null;
+                dirty.remove(store);
+            }
+
+            try {
+                store.writer.write();
+                done.complete(null);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("❌ Error saving " + store.name + ": " + e.getMessage());
+                done.completeExceptionally(e);
+                // The changes are still only in memory, so the next window tries again
+                markDirty(store);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package service;
+
+import model.Product;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Products ordered by price (in minor units), then id, in two parallel primitive arrays. A price
+ * range is located with two binary searches and read as one contiguous run, so
+ * range queries cost O(log n + k) and come back already sorted by price.
+ */
+class PriceIndex {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] prices = new long[DEFAULT_CAPACITY];
+    private int[] ids = new int[DEFAULT_CAPACITY];
+    private int size;
+
+    void build(Collection<Product> products) {
+        long[] newPrices = new long[Math.max(products.size(), DEFAULT_CAPACITY)];
+        int[] newIds = new int[newPrices.length];
+
+        int count = 0;
+        long maxPrice = 0;
+        for (Product product : products) {
+            newPrices[count] = product.getPriceMinor();
+            newIds[count] = product.getId();
+            maxPrice = Math.max(maxPrice, newPrices[count]);
+            count++;
+        }
+
+        prices = new long[newPrices.length];
+        ids = new int[newPrices.length];
+        if (maxPrice <= Integer.MAX_VALUE) {
+            // Every price fits in 31 bits, so one long sort key covers price then id
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = (newPrices[i] << 32) | newIds[i];
+            }
+            Arrays.sort(order);
+            for (int i = 0; i < count; i++) {
+                prices[i] = order[i] >>> 32;
+                ids[i] = (int) order[i];
+            }
+        } else {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> newPrices[a] != newPrices[b]
+                    ? Long.compare(newPrices[a], newPrices[b])
+                    : Integer.compare(newIds[a], newIds[b]));
+            for (int i = 0; i < count; i++) {
+                prices[i] = newPrices[order[i]];
+                ids[i] = newIds[order[i]];
+            }
+        }
+        size = count;
+    }
+
+    void add(Product product) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size << 1);
+            ids = Arrays.copyOf(ids, size << 1);
+        }
+
+        long price = product.getPriceMinor();
+        int position = lowerBound(price, product.getId());
+        System.arraycopy(prices, position, prices, position + 1, size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        prices[position] = price;
+        ids[position] = product.getId();
+        size++;
+    }
+
+    /** Removes the entry filed under {@code price}, the product's price when it was last indexed. */
+    void remove(int productId, long price) {
+        int position = lowerBound(price, productId);
+        if (position == size || ids[position] != productId || prices[position] != price) return;
+
+        System.arraycopy(prices, position + 1, prices, position, size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+    }
+
+    void priceChanged(Product product, long oldPrice) {
+        remove(product.getId(), oldPrice);
+        add(product);
+    }
+
+    /**
+     * Ids of the products priced between {@code minPrice} and {@code maxPrice}
+     * inclusive, in price order, skipping the first {@code offset} and
+     * returning at most {@code limit}.
+     */
+    int[] range(long minPrice, long maxPrice, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset cannot be negative");
+        }
+        int lower = lowerBound(minPrice, Integer.MIN_VALUE);
+        int to = upperBound(maxPrice);
+        // Checked before adding, so a huge offset cannot overflow
+        if (offset >= to - lower) return new int[0];
+
+        int from = lower + offset;
+        return Arrays.copyOfRange(ids, from, from + Math.min(limit, to - from));
+    }
+
+    int countInRange(long minPrice, long maxPrice) {
+        return Math.max(0, upperBound(maxPrice) - lowerBound(minPrice, Integer.MIN_VALUE));
+    }
+
+    // First position priced above price
+    private int upperBound(long price) {
+        return price == Long.MAX_VALUE ? size : lowerBound(price + 1, Integer.MIN_VALUE);
+    }
+
+    // First position whose entry is not less than (price, id)
+    private int lowerBound(long price, int id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int byPrice = Long.compare(prices[mid], price);
+            if (byPrice < 0 || (byPrice == 0 && ids[mid] < id)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
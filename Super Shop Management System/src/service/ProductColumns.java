@@ -0,0 +1,126 @@
+package service;
+
+import model.Product;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The fields that filters and totals read, held column by column: parallel
+ * primitive arrays of id, category, price (in minor units) and quantity, one
+ * row per product in id order. A scan over one or two fields is a plain loop
+ * over contiguous arrays instead of a walk through every {@link Product}
+ * object, its {@code Date} and its name, and a row costs 20 bytes.
+ */
+class ProductColumns {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] ids = new int[DEFAULT_CAPACITY];
+    private int[] categoryIds = new int[DEFAULT_CAPACITY];
+    private long[] prices = new long[DEFAULT_CAPACITY];
+    private int[] quantities = new int[DEFAULT_CAPACITY];
+    private int size;
+
+    void build(Collection<Product> products) {
+        Product[] sorted = products.toArray(new Product[0]);
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a.getId(), b.getId()));
+
+        int capacity = Math.max(sorted.length, DEFAULT_CAPACITY);
+        ids = new int[capacity];
+        categoryIds = new int[capacity];
+        prices = new long[capacity];
+        quantities = new int[capacity];
+        size = sorted.length;
+        for (int row = 0; row < size; row++) {
+            fill(row, sorted[row]);
+        }
+    }
+
+    /** Adds the product, or refreshes its row if it is already there. */
+    void put(Product product) {
+        int row = Arrays.binarySearch(ids, 0, size, product.getId());
+        if (row < 0) {
+            row = -row - 1;
+            if (size == ids.length) {
+                int capacity = size << 1;
+                ids = Arrays.copyOf(ids, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+            }
+            // New products almost always have the highest id, so this rarely moves anything
+            System.arraycopy(ids, row, ids, row + 1, size - row);
+            System.arraycopy(categoryIds, row, categoryIds, row + 1, size - row);
+            System.arraycopy(prices, row, prices, row + 1, size - row);
+            System.arraycopy(quantities, row, quantities, row + 1, size - row);
+            size++;
+        }
+        fill(row, product);
+    }
+
+    /**
+     * Refreshes only the product's quantity. It writes a single slot, so stock
+     * changes to different products can call it at the same time, as long as
+     * no row is being added or removed.
+     */
+    void quantityChanged(Product product, int quantity) {
+        int row = Arrays.binarySearch(ids, 0, size, product.getId());
+        if (row >= 0) {
+            quantities[row] = quantity;
+        }
+    }
+
+    void remove(int productId) {
+        int row = Arrays.binarySearch(ids, 0, size, productId);
+        if (row < 0) return;
+
+        System.arraycopy(ids, row + 1, ids, row, size - row - 1);
+        System.arraycopy(categoryIds, row + 1, categoryIds, row, size - row - 1);
+        System.arraycopy(prices, row + 1, prices, row, size - row - 1);
+        System.arraycopy(quantities, row + 1, quantities, row, size - row - 1);
+        size--;
+    }
+
+    /** Ids of the products in stock but at or under {@code threshold}, ascending. */
+    int[] lowStockIds(int threshold) {
+        int[] matches = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            int quantity = quantities[row];
+            if (quantity > 0 && quantity <= threshold) {
+                matches[count++] = ids[row];
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * Price times quantity over every product, in minor units. Plain long
+     * arithmetic keeps the loop free of overflow checks so the JIT can unroll
+     * and vectorize it; a catalog would need stock worth about 10^16 major
+     * units to overflow.
+     */
+    long stockValue() {
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            total += prices[row] * quantities[row];
+        }
+        return total;
+    }
+
+    /** Price times quantity over the products in one category, in minor units. */
+    long stockValue(int categoryId) {
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            total += categoryIds[row] == categoryId ? prices[row] * quantities[row] : 0;
+        }
+        return total;
+    }
+
+    private void fill(int row, Product product) {
+        ids[row] = product.getId();
+        categoryIds[row] = product.getCategoryId();
+        prices[row] = product.getPriceMinor();
+        quantities[row] = product.getQuantity();
+    }
+}
@@ -0,0 +1,180 @@
+package service;
+
+import model.Product;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index from product id to {@link Product} and the
+ * product's position in the catalog list, so replacing or removing it from
+ * the list needs no scan. Keys are kept in a primitive int array so lookups
+ * never box.
+ */
+class ProductIdIndex {
+    private static final int EMPTY = 0;          // product ids are always positive
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Product[] values;
+    private int[] positions;
+    private int size;
+    private int resizeAt;
+
+    ProductIdIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ProductIdIndex(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    Product get(int id) {
+        if (id <= 0) return null;
+
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (true) {
+            int key = keys[slot];
+            if (key == id) return values[slot];
+            if (key == EMPTY) return null;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    /** Where the product sits in the catalog list, or -1 if it is not indexed. */
+    int positionOf(int id) {
+        if (id <= 0) return -1;
+
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (true) {
+            int key = keys[slot];
+            if (key == id) return positions[slot];
+            if (key == EMPTY) return -1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    Product put(Product product, int position) {
+        int id = product.getId();
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (true) {
+            int key = keys[slot];
+            if (key == id) {
+                Product previous = values[slot];
+                values[slot] = product;
+                positions[slot] = position;
+                return previous;
+            }
+            if (key == EMPTY) {
+                keys[slot] = id;
+                values[slot] = product;
+                positions[slot] = position;
+                if (++size >= resizeAt) {
+                    rehash(keys.length << 1);
+                }
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    Product remove(int id) {
+        if (id <= 0) return null;
+
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (true) {
+            int key = keys[slot];
+            if (key == EMPTY) return null;
+            if (key == id) break;
+            slot = (slot + 1) & mask;
+        }
+
+        Product removed = values[slot];
+        shiftKeys(slot);
+        size--;
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private void shiftKeys(int slot) {
+        int mask = keys.length - 1;
+        int last = slot;
+        slot = (slot + 1) & mask;
+        while (true) {
+            int key = keys[slot];
+            if (key == EMPTY) break;
+
+            int home = hash(key) & mask;
+            boolean movable = last <= slot
+                    ? (home <= last || home > slot)
+                    : (home <= last && home > slot);
+            if (movable) {
+                keys[last] = key;
+                values[last] = values[slot];
+                positions[last] = positions[slot];
+                last = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[last] = EMPTY;
+        values[last] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        Product[] oldValues = values;
+        int[] oldPositions = positions;
+        allocate(newCapacity);
+
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key == EMPTY) continue;
+
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+            positions[slot] = oldPositions[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Product[capacity];
+        positions = new int[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        int capacity = Integer.highestOneBit(Math.max(needed, DEFAULT_CAPACITY) - 1) << 1;
+        return Math.max(capacity, DEFAULT_CAPACITY);
+    }
+
+    // Fibonacci hashing spreads the mostly sequential product ids across the table
+    static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
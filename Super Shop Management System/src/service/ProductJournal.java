@@ -0,0 +1,403 @@
+package service;
+
+import model.Money;
+import model.Product;
+import util.BinaryReader;
+import util.BinaryWriter;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Persists the product catalog as a snapshot plus a write-ahead log.
+ * Every mutation appends a small record to the active log segment, which is
+ * synced once per persistence window; once the segment grows past
+ * {@link #COMPACT_AFTER_RECORDS} the catalog is written to a fresh snapshot in
+ * the background and the covered segments are deleted.
+ * Records carry absolute values, so replaying a segment over a newer snapshot
+ * is harmless.
+ */
+class ProductJournal implements ProductStore {
+    private static final int LOG_MAGIC = 0x50524F44; // "PROD"
+    private static final short LOG_VERSION = 3;
+    private static final short FLOAT_PRICE_LOG_VERSION = 1;  // segments written before prices were fixed-point
+    private static final short FIXED_WIDTH_LOG_VERSION = 2;  // segments written before records used varints
+    private static final int SNAPSHOT_MAGIC = 0x50534E50;    // "PSNP"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final String SEGMENT_PREFIX = "products.log.";
+    private static final int COMPACT_AFTER_RECORDS = 1000;
+    private static final int RECORD_BUFFER_SIZE = 256;
+
+    private static final byte PUT = 1;
+    private static final byte UPDATE_QUANTITY = 2;
+    private static final byte UPDATE_PRICE = 3;
+    private static final byte DELETE = 4;
+    private static final byte UPDATE_QUANTITIES = 5;
+
+    private final Path snapshotFile;
+    private final Path dataDir;
+    private final Object snapshotLock = new Object();
+    private ExecutorService compactor;
+    private PersistenceScheduler.Store logSync;
+    private long lastSnapshotSegment;
+    private AppendLog activeLog;
+    private long activeSegment;
+    private boolean compacting;
+
+    ProductJournal(String snapshotFile) {
+        this.snapshotFile = Paths.get(snapshotFile);
+        this.dataDir = this.snapshotFile.toAbsolutePath().getParent();
+    }
+
+    /**
+     * Reads the catalog saved under {@code snapshotFile} without changing any
+     * file: no segment is opened or deleted and nothing is compacted. For
+     * handing the catalog over to another store.
+     */
+    static List<Product> readCatalog(String snapshotFile) throws IOException {
+        ProductJournal journal = new ProductJournal(snapshotFile);
+        Map<Integer, Product> catalog = new LinkedHashMap<>();
+        journal.replay(catalog, journal.hasLegacySnapshot(), journal.listSegments());
+        return new ArrayList<>(catalog.values());
+    }
+
+    /**
+     * Loads the latest snapshot, replays the log segments written after it and
+     * opens a new segment for subsequent mutations.
+     */
+    @Override
+    public synchronized List<Product> load() throws IOException {
+        Map<Integer, Product> catalog = new LinkedHashMap<>();
+        boolean legacySnapshot = hasLegacySnapshot();
+        List<Long> segments = listSegments();
+        long replayed = replay(catalog, legacySnapshot, segments);
+
+        activeSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        List<Product> products = new ArrayList<>(catalog.values());
+        if (replayed > 0 || legacySnapshot) {
+            scheduleCompaction(products);
+        } else {
+            for (long segment : segments) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+            rollSegment();
+        }
+        return products;
+    }
+
+    @Override
+    public boolean recordPut(Product product) {
+        return append(encodePut(product));
+    }
+
+    @Override
+    public boolean recordQuantity(int productId, int quantity) {
+        return append(encode(out -> {
+            out.writeByte(UPDATE_QUANTITY);
+            out.writeVarInt(productId);
+            out.writeVarInt(quantity);
+        }));
+    }
+
+    /**
+     * Logs several absolute stock levels as one record, so a multi-line
+     * adjustment is replayed either completely or not at all.
+     */
+    @Override
+    public boolean recordQuantities(Map<Integer, Integer> quantities) {
+        return append(encode(out -> {
+            out.writeByte(UPDATE_QUANTITIES);
+            out.writeVarInt(quantities.size());
+            for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                out.writeVarInt(entry.getKey());
+                out.writeVarInt(entry.getValue());
+            }
+        }));
+    }
+
+    @Override
+    public boolean recordPrice(int productId, Money price) {
+        return append(encode(out -> {
+            out.writeByte(UPDATE_PRICE);
+            out.writeVarInt(productId);
+            out.writeVarLong(price.getMinorUnits());
+        }));
+    }
+
+    @Override
+    public boolean recordDelete(int productId) {
+        return append(encode(out -> {
+            out.writeByte(DELETE);
+            out.writeVarInt(productId);
+        }));
+    }
+
+    @Override
+    public synchronized boolean needsCompaction() {
+        return !compacting && activeLog != null && activeLog.getRecordCount() >= COMPACT_AFTER_RECORDS;
+    }
+
+    /**
+     * Starts a background snapshot if the active segment has grown large enough.
+     * The supplier is invoked on the caller's thread, before the segment is
+     * rolled, and must return products the compactor alone holds, matching
+     * every mutation already logged; the covered segments are deleted once the
+     * snapshot is written.
+     */
+    @Override
+    public synchronized void compactIfNeeded(Supplier<List<Product>> catalog) {
+        if (needsCompaction()) {
+            scheduleCompaction(catalog.get());
+        }
+    }
+
+    /**
+     * Writes a snapshot of {@code products} synchronously and drops all log segments.
+     */
+    @Override
+    public synchronized boolean writeSnapshot(List<Product> products) {
+        try {
+            long coveredSegment = rollSegment();
+            persistSnapshot(products, coveredSegment);
+            return true;
+        } catch (IOException e) {
+            System.err.println("❌ Error saving products: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized boolean append(byte[] record) {
+        try {
+            activeLog.append(record);
+            logSync.markDirty();
+            return true;
+        } catch (IOException e) {
+            System.err.println("❌ Error saving products: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void syncActiveLog() throws IOException {
+        AppendLog log;
+        synchronized (this) {
+            log = activeLog;
+        }
+        if (log != null) {
+            log.force();
+        }
+    }
+
+    private void scheduleCompaction(List<Product> products) {
+        long coveredSegment;
+        try {
+            coveredSegment = rollSegment();
+        } catch (IOException e) {
+            System.err.println("❌ Error rolling product log: " + e.getMessage());
+            return;
+        }
+
+        compacting = true;
+        List<Product> copy = new ArrayList<>(products);
+        compactor.execute(() -> {
+            try {
+                persistSnapshot(copy, coveredSegment);
+            } catch (IOException e) {
+                System.err.println("❌ Error compacting product log: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    // Fills the catalog from the snapshot and the segments after it; returns how many records were replayed
+    private long replay(Map<Integer, Product> catalog, boolean legacySnapshot, List<Long> segments) throws IOException {
+        for (Product product : legacySnapshot ? readLegacySnapshot() : readSnapshot()) {
+            catalog.put(product.getId(), product);
+        }
+
+        long replayed = 0;
+        for (long segment : segments) {
+            replayed += AppendLog.replay(segmentPath(segment), LOG_MAGIC, (version, in) -> apply(catalog, version, in)).records();
+        }
+        return replayed;
+    }
+
+    private boolean hasLegacySnapshot() throws IOException {
+        return Files.exists(snapshotFile) && DataFiles.isJavaSerialized(snapshotFile);
+    }
+
+    // Closes the active segment and opens the next one; returns the last segment the snapshot will cover
+    private long rollSegment() throws IOException {
+        if (logSync == null) {
+            // Set up on the first write, so a journal that is only read leaves nothing behind
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "product-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logSync = PersistenceScheduler.shared().register("product log", this::syncActiveLog);
+        }
+
+        long covered = activeSegment;
+        if (activeLog != null) {
+            activeLog.close();
+        }
+        activeSegment++;
+        activeLog = new AppendLog(segmentPath(activeSegment), LOG_MAGIC, LOG_VERSION);
+        return covered;
+    }
+
+    private void persistSnapshot(List<Product> products, long coveredSegment) throws IOException {
+        synchronized (snapshotLock) {
+            // A newer snapshot may already have been written synchronously
+            if (coveredSegment <= lastSnapshotSegment) return;
+
+            DataFiles.write(snapshotFile, SNAPSHOT_MAGIC, SNAPSHOT_VERSION, out -> {
+                out.writeVarInt(products.size());
+                for (Product product : products) {
+                    product.writeBinary(out);
+                }
+            });
+            lastSnapshotSegment = coveredSegment;
+
+            for (long segment : listSegments()) {
+                if (segment <= coveredSegment) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+            }
+        }
+    }
+
+    private List<Product> readSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) return Collections.emptyList();
+
+        return DataFiles.read(snapshotFile, SNAPSHOT_MAGIC, (in, version) -> {
+            int count = in.readVarInt();
+            List<Product> products = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                products.add(Product.readBinary(in));
+            }
+            return products;
+        });
+    }
+
+    // Snapshots from before the binary format were a serialized List<Product>
+    @SuppressWarnings("unchecked")
+    private List<Product> readLegacySnapshot() throws IOException {
+        return DataFiles.readJavaSerialized(snapshotFile, in -> (List<Product>) in.readObject());
+    }
+
+    private void apply(Map<Integer, Product> catalog, int version, DataInputStream record) throws IOException {
+        if (version <= FIXED_WIDTH_LOG_VERSION) {
+            applyFixedWidth(catalog, version, record);
+            return;
+        }
+
+        BinaryReader in = new BinaryReader(record, RECORD_BUFFER_SIZE);
+        byte type = in.readByte();
+        switch (type) {
+            case PUT -> {
+                Product product = Product.readBinary(in);
+                catalog.put(product.getId(), product);
+            }
+            case UPDATE_QUANTITY -> {
+                Product product = catalog.get(in.readVarInt());
+                int quantity = in.readVarInt();
+                if (product != null) product.setQuantity(quantity);
+            }
+            case UPDATE_QUANTITIES -> {
+                int count = in.readVarInt();
+                for (int i = 0; i < count; i++) {
+                    Product product = catalog.get(in.readVarInt());
+                    int quantity = in.readVarInt();
+                    if (product != null) product.setQuantity(quantity);
+                }
+            }
+            case UPDATE_PRICE -> {
+                Product product = catalog.get(in.readVarInt());
+                Money price = Money.ofMinor(in.readVarLong());
+                if (product != null) product.setPrice(price);
+            }
+            case DELETE -> catalog.remove(in.readVarInt());
+            default -> throw new IOException("Unknown product log record type " + type);
+        }
+    }
+
+    // Records from segments written before varints: fixed-width ints and a float or long price
+    private void applyFixedWidth(Map<Integer, Product> catalog, int version, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == UPDATE_QUANTITIES) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Product product = catalog.get(in.readInt());
+                int quantity = in.readInt();
+                if (product != null) product.setQuantity(quantity);
+            }
+            return;
+        }
+
+        int id = in.readInt();
+        switch (type) {
+            case PUT -> catalog.put(id, new Product(id, in.readInt(), in.readUTF(),
+                    readPrice(version, in), in.readInt(), new Date(in.readLong())));
+            case UPDATE_QUANTITY -> {
+                Product product = catalog.get(id);
+                int quantity = in.readInt();
+                if (product != null) product.setQuantity(quantity);
+            }
+            case UPDATE_PRICE -> {
+                Product product = catalog.get(id);
+                Money price = readPrice(version, in);
+                if (product != null) product.setPrice(price);
+            }
+            case DELETE -> catalog.remove(id);
+            default -> throw new IOException("Unknown product log record type " + type);
+        }
+    }
+
+    private static Money readPrice(int version, DataInputStream in) throws IOException {
+        return version == FLOAT_PRICE_LOG_VERSION ? Money.of(in.readFloat()) : Money.ofMinor(in.readLong());
+    }
+
+    private static byte[] encodePut(Product product) {
+        return encode(out -> {
+            out.writeByte(PUT);
+            product.writeBinary(out);
+        });
+    }
+
+    private static byte[] encode(DataFiles.Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (BinaryWriter out = new BinaryWriter(bytes, RECORD_BUFFER_SIZE)) {
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<Long> listSegments() throws IOException {
+        if (!Files.isDirectory(dataDir)) return Collections.emptyList();
+
+        try (Stream<Path> files = Files.list(dataDir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX))
+                    .map(name -> name.substring(SEGMENT_PREFIX.length()))
+                    .filter(suffix -> suffix.chars().allMatch(Character::isDigit) && !suffix.isEmpty())
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dataDir.resolve(SEGMENT_PREFIX + segment);
+    }
+}
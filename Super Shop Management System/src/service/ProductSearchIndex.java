@@ -0,0 +1,186 @@
+package service;
+
+import model.Product;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Inverted index from search terms to product ids. Terms come from the product
+ * name and its category name; each posting list is a sorted primitive id array,
+ * so a multi-term query is answered by intersecting the lists, shortest first.
+ * Results are ranked by how many query terms appear in the product name, then
+ * by whether the product is in stock.
+ */
+class ProductSearchIndex {
+    private static final int NAME_MATCH_SCORE = 2;
+    private static final int IN_STOCK_SCORE = 1;
+
+    // What each product was indexed under, so changes can be undone without the old values
+    private static class IndexedTerms {
+        private final String[] terms;      // name terms first, then category terms not in the name
+        private final int nameTermCount;
+
+        IndexedTerms(List<String> nameTerms, List<String> categoryTerms) {
+            List<String> all = new ArrayList<>(nameTerms.size() + categoryTerms.size());
+            all.addAll(nameTerms);
+            for (String term : categoryTerms) {
+                if (!all.contains(term)) all.add(term);
+            }
+            this.terms = all.toArray(new String[0]);
+            this.nameTermCount = nameTerms.size();
+        }
+
+        boolean hasNameTerm(String term) {
+            for (int i = 0; i < nameTermCount; i++) {
+                if (terms[i].equals(term)) return true;
+            }
+            return false;
+        }
+
+        boolean hasTerm(String term) {
+            for (String indexed : terms) {
+                if (indexed.equals(term)) return true;
+            }
+            return false;
+        }
+    }
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, IndexedTerms> indexedTerms = new HashMap<>();
+
+    static Set<String> tokenize(String text) {
+        return new LinkedHashSet<>(termsOf(text));
+    }
+
+    // Distinct terms in order of first appearance; names are short, so a list beats a hash set
+    private static List<String> termsOf(String text) {
+        List<String> terms = new ArrayList<>(4);
+        if (text == null) return terms;
+
+        String folded = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean partOfTerm = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (partOfTerm && start < 0) {
+                start = i;
+            } else if (!partOfTerm && start >= 0) {
+                String term = folded.substring(start, i);
+                if (!terms.contains(term)) terms.add(term);
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    void build(Collection<Product> products, IntFunction<String> categoryNames) {
+        postings.clear();
+        indexedTerms.clear();
+        Map<Integer, List<String>> categoryTerms = new HashMap<>();
+        for (Product product : products) {
+            add(product, categoryTerms.computeIfAbsent(product.getCategoryId(),
+                    id -> termsOf(categoryNames.apply(id))));
+        }
+    }
+
+    void add(Product product, String categoryName) {
+        add(product, termsOf(categoryName));
+    }
+
+    private void add(Product product, List<String> categoryTerms) {
+        IndexedTerms terms = new IndexedTerms(termsOf(product.getName()), categoryTerms);
+        IndexedTerms previous = indexedTerms.put(product.getId(), terms);
+        if (previous != null) {
+            unlink(product.getId(), previous, terms);
+        }
+        for (String term : terms.terms) {
+            postings.computeIfAbsent(term, t -> new Postings()).add(product.getId());
+        }
+    }
+
+    /** Re-files a product whose name or category may have changed since it was indexed. */
+    void update(Product product, String categoryName) {
+        add(product, categoryName);
+    }
+
+    void remove(int productId) {
+        IndexedTerms previous = indexedTerms.remove(productId);
+        if (previous != null) {
+            unlink(productId, previous, null);
+        }
+    }
+
+    /**
+     * Ids of products matching every term of {@code query}, best first, at
+     * most {@code limit} of them.
+     */
+    int[] search(String query, int limit, IntPredicate inStock) {
+        Set<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) return new int[0];
+
+        List<Postings> lists = new ArrayList<>(queryTerms.size());
+        for (String term : queryTerms) {
+            Postings list = postings.get(term);
+            if (list == null) return new int[0];
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Postings::size));
+
+        int[] matches = lists.get(0).toArray();
+        int count = matches.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = intersect(matches, count, lists.get(i));
+        }
+        return rank(matches, count, queryTerms, limit, inStock);
+    }
+
+    private int[] rank(int[] matches, int count, Set<String> queryTerms, int limit, IntPredicate inStock) {
+        long[] ranked = new long[count];
+        for (int i = 0; i < count; i++) {
+            int id = matches[i];
+            int score = 0;
+            IndexedTerms terms = indexedTerms.get(id);
+            for (String term : queryTerms) {
+                if (terms.hasNameTerm(term)) score += NAME_MATCH_SCORE;
+            }
+            if (inStock.test(id)) score += IN_STOCK_SCORE;
+            // Higher score sorts first, ties keep ascending id order
+            ranked[i] = ((long) (Integer.MAX_VALUE - score) << 32) | id;
+        }
+        Arrays.sort(ranked);
+
+        int[] result = new int[Math.min(limit, count)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) ranked[i];
+        }
+        return result;
+    }
+
+    // Keeps the ids in matches[0..count) that are also in the list; both are sorted
+    private static int intersect(int[] matches, int count, Postings list) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < list.size(); i++) {
+            int id = matches[i];
+            while (j < list.size() && list.get(j) < id) j++;
+            if (j < list.size() && list.get(j) == id) {
+                matches[kept++] = id;
+            }
+        }
+        return kept;
+    }
+
+    private void unlink(int productId, IndexedTerms oldTerms, IndexedTerms keptTerms) {
+        for (String term : oldTerms.terms) {
+            if (keptTerms != null && keptTerms.hasTerm(term)) continue;
+
+            Postings list = postings.get(term);
+            if (list == null) continue;
+            list.remove(productId);
+            if (list.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+}
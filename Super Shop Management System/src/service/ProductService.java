@@ -1,21 +1,106 @@
 package service;
 
+import model.Money;
 import model.Product;
+import model.ProductChangeListener;
+import model.StockAlert;
+import util.CsvReader;
+import util.CsvWriter;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class ProductService {
-    private static final String PRODUCTS_FILE = "data/products.dat";
-    private static final String CATEGORIES_FILE = "data/categories.dat";
+    private static final String PRODUCTS_FILE = DataDirectory.resolve("products.dat");
+    private static final String CATEGORIES_FILE = DataDirectory.resolve("categories.dat");
+    private static final String STOCK_THRESHOLDS_FILE = DataDirectory.resolve("stock_thresholds.dat");
+    private static final String PRODUCT_ID_FILE = DataDirectory.resolve("product_id.seq");
+    private static final int CATEGORIES_MAGIC = 0x43415453;       // "CATS"
+    private static final int STOCK_THRESHOLDS_MAGIC = 0x53544B54; // "STKT"
+    private static final int FORMAT_VERSION = 1;
     private static final int DEFAULT_CATEGORY_ID = 1;
+    private static final String[] CSV_HEADER = {"id", "categoryId", "name", "price", "quantity", "dateAdded"};
+    private static final int MAX_REPORTED_CSV_ERRORS = 10;
+    public static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
+    /** Set to {@code mapped} to keep the catalog in memory-mapped files instead of reading it all at startup. */
+    public static final String STORE_PROPERTY = "supershop.productStore";
+    private static final String MAPPED_STORE = "mapped";
+    private static final int STOCK_LOCK_STRIPES = 256;
+    private static final long RESERVATION_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
 
     private List<Product> products;
-    private Map<Integer, String> categories;
+    private final Map<Integer, String> categories;
+    private final ProductIdIndex productIndex;
+    private final NamePrefixIndex nameIndex;
+    private final ProductSearchIndex searchIndex;
+    private final FuzzyNameIndex fuzzyIndex;
+    // Entries only move while the monitor is held, so readers take it too; stock changes just rewrite a slot
+    private final CategoryIndex categoryIndex;
+    private final PriceIndex priceIndex;
+    private final ProductColumns columns;
+    private final LowStockTracker lowStockTracker;
+    private final IdAllocator productIds;
+    private final ProductChangeListener indexMaintainer;
+    private final ProductStore store;
+    private final MappedProductStore mappedStore; // null unless the mapped store was selected
+    private final StockLocks stockLocks;
+    private final StockReservations reservations;
+    private final PersistenceScheduler.Store categoriesFile;
+    private final PersistenceScheduler.Store stockThresholdsFile;
+    private volatile boolean catalogLoaded;
 
     public ProductService() {
         this.products = new ArrayList<>();
-        this.categories = new HashMap<>();
+        this.categories = new ConcurrentHashMap<>();
+        this.productIndex = new ProductIdIndex();
+        this.nameIndex = new NamePrefixIndex();
+        this.searchIndex = new ProductSearchIndex();
+        this.fuzzyIndex = new FuzzyNameIndex();
+        this.categoryIndex = new CategoryIndex();
+        this.priceIndex = new PriceIndex();
+        this.columns = new ProductColumns();
+        this.lowStockTracker = new LowStockTracker(DEFAULT_LOW_STOCK_THRESHOLD);
+        this.productIds = new IdAllocator(PRODUCT_ID_FILE);
+        this.stockLocks = new StockLocks(STOCK_LOCK_STRIPES);
+        this.reservations = new StockReservations(RESERVATION_TTL_MILLIS, STOCK_LOCK_STRIPES, System::currentTimeMillis);
+        this.categoriesFile = PersistenceScheduler.shared().register("categories", this::writeCategories);
+        this.stockThresholdsFile = PersistenceScheduler.shared().register("stock thresholds", this::writeStockThresholds);
+        this.indexMaintainer = new ProductChangeListener() {
+            @Override
+            public void categoryChanged(Product product, int oldCategoryId) {
+                categoryIndex.categoryChanged(product, oldCategoryId);
+                columns.put(product);
+                searchIndex.update(product, getCategoryName(product.getCategoryId()));
+            }
+
+            @Override
+            public void quantityChanged(Product product, int oldQuantity, int newQuantity) {
+                categoryIndex.quantityChanged(product, oldQuantity, newQuantity);
+                columns.quantityChanged(product, newQuantity);
+                lowStockTracker.update(product);
+            }
+
+            @Override
+            public void priceChanged(Product product, Money oldPrice) {
+                priceIndex.priceChanged(product, oldPrice.getMinorUnits());
+                columns.put(product);
+            }
+        };
+        if (MAPPED_STORE.equals(System.getProperty(STORE_PROPERTY))) {
+            this.mappedStore = new MappedProductStore(Paths.get(DataDirectory.path()));
+            this.store = mappedStore;
+        } else {
+            this.mappedStore = null;
+            this.store = new ProductJournal(PRODUCTS_FILE);
+        }
         initializeData();
     }
 
@@ -27,11 +112,12 @@ public class ProductService {
             createDefaultCategories();
         }
 
+        loadStockThresholds();
         loadProducts();
     }
 
     private void createDataDirectory() {
-        File dataDir = new File("data");
+        File dataDir = new File(DataDirectory.path());
         if (!dataDir.exists() && !dataDir.mkdirs()) {
             System.err.println("❌ Failed to create data directory");
         }
@@ -39,12 +125,24 @@ public class ProductService {
 
     @SuppressWarnings("unchecked")
     private void loadCategories() {
-        File file = new File(CATEGORIES_FILE);
-        if (!file.exists()) return;
+        Path file = Paths.get(CATEGORIES_FILE);
+        if (!Files.exists(file)) return;
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            categories = (Map<Integer, String>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+        try {
+            if (DataFiles.isJavaSerialized(file)) {
+                categories.putAll(DataFiles.readJavaSerialized(file, in -> (Map<Integer, String>) in.readObject()));
+                saveCategories();
+                return;
+            }
+            categories.putAll(DataFiles.read(file, CATEGORIES_MAGIC, (in, version) -> {
+                int count = in.readVarInt();
+                Map<Integer, String> loaded = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    loaded.put(in.readVarInt(), in.readString());
+                }
+                return loaded;
+            }));
+        } catch (IOException e) {
             System.err.println("❌ Error loading categories: " + e.getMessage());
         }
     }
@@ -64,47 +162,113 @@ public class ProductService {
             throw new IllegalArgumentException("Invalid category data");
         }
 
-        if (categories.containsKey(id)) {
+        if (categories.putIfAbsent(id, name.trim()) != null) {
             System.err.println("❌ Category ID already exists");
             return false;
         }
-        categories.put(id, name.trim());
         return saveCategories();
     }
 
+    // Settings change rarely, so these saves wait for the disk and can report a failure
     private boolean saveCategories() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(CATEGORIES_FILE))) {
-            oos.writeObject(categories);
-            return true;
+        return categoriesFile.markDirty().handle((done, error) -> error == null).join();
+    }
+
+    private void writeCategories() throws IOException {
+        Map<Integer, String> snapshot = new HashMap<>(categories);
+        DataFiles.write(Paths.get(CATEGORIES_FILE), CATEGORIES_MAGIC, FORMAT_VERSION, out -> {
+            out.writeVarInt(snapshot.size());
+            for (Map.Entry<Integer, String> category : snapshot.entrySet()) {
+                out.writeVarInt(category.getKey());
+                out.writeString(category.getValue());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadStockThresholds() {
+        Path file = Paths.get(STOCK_THRESHOLDS_FILE);
+        if (!Files.exists(file)) return;
+
+        try {
+            if (DataFiles.isJavaSerialized(file)) {
+                DataFiles.readJavaSerialized(file, in -> {
+                    lowStockTracker.setDefaultThreshold(in.readInt());
+                    lowStockTracker.setProductThresholds((Map<Integer, Integer>) in.readObject());
+                    return null;
+                });
+                saveStockThresholds();
+                return;
+            }
+            DataFiles.read(file, STOCK_THRESHOLDS_MAGIC, (in, version) -> {
+                lowStockTracker.setDefaultThreshold(in.readVarInt());
+                int count = in.readVarInt();
+                Map<Integer, Integer> thresholds = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    thresholds.put(in.readVarInt(), in.readVarInt());
+                }
+                lowStockTracker.setProductThresholds(thresholds);
+                return null;
+            });
         } catch (IOException e) {
-            System.err.println("❌ Error saving categories: " + e.getMessage());
-            return false;
+            System.err.println("❌ Error loading stock thresholds: " + e.getMessage());
         }
     }
 
-    public boolean insertProduct(Product product) {
+    private boolean saveStockThresholds() {
+        return stockThresholdsFile.markDirty().handle((done, error) -> error == null).join();
+    }
+
+    private void writeStockThresholds() throws IOException {
+        Map<Integer, Integer> thresholds = lowStockTracker.getProductThresholds();
+        DataFiles.write(Paths.get(STOCK_THRESHOLDS_FILE), STOCK_THRESHOLDS_MAGIC, FORMAT_VERSION, out -> {
+            out.writeVarInt(lowStockTracker.getDefaultThreshold());
+            out.writeVarInt(thresholds.size());
+            for (Map.Entry<Integer, Integer> threshold : thresholds.entrySet()) {
+                out.writeVarInt(threshold.getKey());
+                out.writeVarInt(threshold.getValue());
+            }
+        });
+    }
+
+    public synchronized boolean insertProduct(Product product) {
         if (product == null) {
             throw new IllegalArgumentException("Product cannot be null");
         }
 
-        if (!categories.containsKey(product.getCategoryId())) {
-            product.setCategoryId(DEFAULT_CATEGORY_ID);
-        }
+        return commit(stockLocks.withAllLocks(() -> {
+            if (!categories.containsKey(product.getCategoryId())) {
+                product.setCategoryId(DEFAULT_CATEGORY_ID);
+            }
 
-        if (productExists(product.getId())) {
-            System.err.println("❌ Product ID already exists");
-            return false;
-        }
+            if (productExists(product.getId())) {
+                System.err.println("❌ Product ID already exists");
+                return false;
+            }
+            if (!store.recordPut(product)) return false;
 
-        products.add(product);
-        return saveProducts();
+            productIds.ensureAbove(product.getId());
+            if (catalogLoaded) {
+                productIndex.put(product, products.size());
+                products.add(product);
+                nameIndex.add(product);
+                fuzzyIndex.add(product);
+                searchIndex.add(product, getCategoryName(product.getCategoryId()));
+                categoryIndex.add(product);
+                priceIndex.add(product);
+                columns.put(product);
+                product.setChangeListener(indexMaintainer);
+            }
+            lowStockTracker.update(product);
+            return true;
+        }));
     }
 
-    public boolean insertProduct(int categoryId, String name, float price, int quantity) {
+    public boolean insertProduct(int categoryId, String name, Money price, int quantity) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Product name cannot be empty");
         }
-        if (price <= 0) {
+        if (price == null || !price.isPositive()) {
             throw new IllegalArgumentException("Price must be positive");
         }
         if (quantity < 0) {
@@ -116,123 +280,651 @@ public class ProductService {
             categoryId = DEFAULT_CATEGORY_ID;
         }
 
-        int newId = generateProductId();
+        int newId = Math.toIntExact(productIds.next());
         return insertProduct(new Product(newId, categoryId, name.trim(), price, quantity));
     }
 
-    private int generateProductId() {
-        return products.stream()
-                .mapToInt(Product::getId)
-                .max()
-                .orElse(0) + 1;
+    /**
+     * Loads products from a CSV file with the columns written by
+     * {@link #exportCsv}; a header line is optional. Rows whose id already
+     * exists replace that product, the rest are added. The indexes are rebuilt
+     * once and the catalog is saved once at the end, rather than per row.
+     * Malformed rows are skipped and reported.
+     *
+     * @return the number of products imported, or -1 if the file could not be read
+     *         or the catalog could not be saved
+     */
+    public synchronized int importCsv(Path file) {
+        Map<Integer, Product> imported = new LinkedHashMap<>();
+        int skipped = 0;
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            while (reader.next()) {
+                if (reader.lineNumber() == 1 && reader.fieldEquals(0, CSV_HEADER[0])) continue;
+
+                try {
+                    Product product = Product.readCsv(reader);
+                    if (!categories.containsKey(product.getCategoryId())) {
+                        product.setCategoryId(DEFAULT_CATEGORY_ID);
+                    }
+                    imported.put(product.getId(), product);
+                } catch (IllegalArgumentException e) {
+                    if (++skipped <= MAX_REPORTED_CSV_ERRORS) {
+                        System.err.println("❌ Skipping line " + reader.lineNumber() + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Error reading " + file + ": " + e.getMessage());
+            return -1;
+        }
+
+        if (imported.isEmpty()) {
+            System.out.println("❌ No products found in " + file);
+            return 0;
+        }
+
+        int skippedLines = skipped;
+        return stockLocks.withAllLocks(() -> {
+            ensureCatalogLoaded();
+            List<Product> merged = new ArrayList<>(products.size() + imported.size());
+            List<Product> replaced = new ArrayList<>();
+            for (Product existing : products) {
+                Product replacement = imported.remove(existing.getId());
+                if (replacement != null) {
+                    replaced.add(existing);
+                    merged.add(replacement);
+                } else {
+                    merged.add(existing);
+                }
+            }
+            int added = imported.size();
+            int updated = replaced.size();
+            merged.addAll(imported.values());
+            if (!store.writeSnapshot(merged)) return -1;
+
+            replaced.forEach(existing -> existing.setChangeListener(null));
+            products = merged;
+            rebuildIndex();
+
+            System.out.printf("✅ Imported %d products (%d new, %d updated, %d skipped)\n",
+                    added + updated, added, updated, skippedLines);
+            return added + updated;
+        });
+    }
+
+    /**
+     * Writes the whole catalog to a CSV file with a header line.
+     *
+     * @return the number of products written, or -1 if the file could not be written
+     */
+    public int exportCsv(Path file) {
+        List<Product> snapshot = getAllProducts();
+        try (CsvWriter writer = new CsvWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            for (String column : CSV_HEADER) {
+                writer.field(column);
+            }
+            writer.endRecord();
+            for (Product product : snapshot) {
+                product.writeCsv(writer);
+                writer.endRecord();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("❌ Error writing " + file + ": " + e.getMessage());
+            return -1;
+        }
+        return snapshot.size();
     }
 
-    public boolean updateProduct(Product updatedProduct) {
+    public synchronized boolean updateProduct(Product updatedProduct) {
         if (updatedProduct == null) return false;
 
-        for (int i = 0; i < products.size(); i++) {
-            if (products.get(i).getId() == updatedProduct.getId()) {
-                products.set(i, updatedProduct);
-                return saveProducts();
+        return commit(stockLocks.withAllLocks(() -> {
+            if (!catalogLoaded) {
+                Product stored = mappedStore.read(updatedProduct.getId());
+                if (stored == null || !store.recordPut(updatedProduct)) return false;
+
+                lowStockTracker.quantityChanged(updatedProduct, stored.getQuantity());
+                return true;
             }
+
+            Product existing = productIndex.get(updatedProduct.getId());
+            if (existing == null || !store.recordPut(updatedProduct)) return false;
+
+            if (existing != updatedProduct) {
+                int position = productIndex.positionOf(existing.getId());
+                products.set(position, updatedProduct);
+                productIndex.put(updatedProduct, position);
+                existing.setChangeListener(null);
+                categoryIndex.remove(existing);
+                categoryIndex.add(updatedProduct);
+                priceIndex.remove(existing.getId(), existing.getPriceMinor());
+                priceIndex.add(updatedProduct);
+                columns.put(updatedProduct);
+                lowStockTracker.update(updatedProduct);
+                updatedProduct.setChangeListener(indexMaintainer);
+            }
+            nameIndex.update(updatedProduct);
+            fuzzyIndex.update(updatedProduct);
+            searchIndex.update(updatedProduct, getCategoryName(updatedProduct.getCategoryId()));
+            return true;
+        }));
+    }
+
+    /**
+     * Renames the product and moves it to another category. The change is
+     * logged from a copy first and only then applied to the catalog's product,
+     * with every stripe held so no stock change or search sees it half done.
+     * Quantity and price are changed through their own methods.
+     *
+     * @return false if the product does not exist or the store write failed
+     */
+    public synchronized boolean updateProductDetails(int productId, String name, int categoryId) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Product name cannot be empty");
+        }
+        if (!categories.containsKey(categoryId)) {
+            throw new IllegalArgumentException("Invalid category ID");
         }
-        return false;
+
+        return commit(stockLocks.withAllLocks(() -> {
+            Product product = getProductById(productId);
+            if (product == null) return false;
+
+            Product updated = new Product(productId, categoryId, name.trim(), product.getPrice(),
+                    product.getQuantity(), product.getDateAdded());
+            if (!store.recordPut(updated)) return false;
+            if (!catalogLoaded) return true;
+
+            product.setName(updated.getName());
+            product.setCategoryId(categoryId);
+            nameIndex.update(product);
+            fuzzyIndex.update(product);
+            searchIndex.update(product, getCategoryName(categoryId));
+            return true;
+        }));
     }
 
+    /**
+     * Adds {@code quantityChange} units to the product's stock, or takes them
+     * off if negative. Units other holders have on hold cannot be taken off.
+     *
+     * @throws IllegalArgumentException if the quantity would drop below zero or below what is on hold
+     */
     public boolean updateProductQuantity(int productId, int quantityChange) {
-        Product product = getProductById(productId);
-        if (product == null) return false;
+        return commit(stockLocks.withLock(productId, () -> {
+            Product product = getProductById(productId);
+            if (product == null) return false;
+
+            int newQuantity = product.getQuantity() + quantityChange;
+            if (newQuantity < 0) {
+                throw new IllegalArgumentException("Cannot reduce quantity below zero");
+            }
+            int reserved = reservations.reserved(productId);
+            if (quantityChange < 0 && newQuantity < reserved) {
+                throw new IllegalArgumentException("Only " + Math.max(0, product.getQuantity() - reserved)
+                        + " of " + product.getName() + " are not on hold");
+            }
+
+            if (!store.recordQuantity(productId, newQuantity)) return false;
 
-        int newQuantity = product.getQuantity() + quantityChange;
-        if (newQuantity < 0) {
-            throw new IllegalArgumentException("Cannot reduce quantity below zero");
+            applyQuantity(product, newQuantity);
+            return true;
+        }));
+    }
+
+    /**
+     * Applies several stock changes as one unit: every line is validated first,
+     * then all new quantities are persisted with a single store write and only
+     * then applied. Either every line is adjusted or none is. Only the lock
+     * stripes of the products involved are held, so baskets with different
+     * products do not wait for each other, and a product cannot be sold twice.
+     *
+     * @param quantityChanges product id to signed quantity change
+     * @return false if any product does not exist or the store write failed
+     */
+    public boolean adjustStock(Map<Integer, Integer> quantityChanges) {
+        return adjustStock(null, quantityChanges);
+    }
+
+    /**
+     * Sells stock reserved with {@link #reserveStock}: takes the quantities off
+     * like {@link #adjustStock} and turns the holder's holds on those products
+     * into the sale. A hold that has expired is not needed as long as enough
+     * units are still free, but units other holders have reserved are never
+     * sold.
+     *
+     * @param quantities product id to quantity sold
+     * @return false if any product does not exist or the store write failed
+     * @throws IllegalArgumentException if a product does not have enough units left for the holder
+     */
+    public boolean sellReserved(String holder, Map<Integer, Integer> quantities) {
+        if (holder == null) {
+            throw new IllegalArgumentException("Reservation holder cannot be null");
         }
+        if (quantities == null || quantities.isEmpty()) return true;
 
-        product.setQuantity(newQuantity);
-        return saveProducts();
+        Map<Integer, Integer> quantityChanges = new LinkedHashMap<>();
+        quantities.forEach((productId, quantity) -> quantityChanges.put(productId, -quantity));
+        return adjustStock(holder, quantityChanges);
     }
 
-    public boolean updateProductPrice(int productId, float newPrice) {
-        if (newPrice <= 0) {
-            throw new IllegalArgumentException("Price must be positive");
+    // With a holder, other holders' reservations are off limits and the holder's own are released once applied
+    private boolean adjustStock(String holder, Map<Integer, Integer> quantityChanges) {
+        if (quantityChanges == null || quantityChanges.isEmpty()) return true;
+
+        return commit(stockLocks.withLocks(quantityChanges.keySet(), () -> {
+            Map<Integer, Integer> newQuantities = new LinkedHashMap<>();
+            List<Product> adjusted = new ArrayList<>(quantityChanges.size());
+            for (Map.Entry<Integer, Integer> change : quantityChanges.entrySet()) {
+                Product product = getProductById(change.getKey());
+                if (product == null) return false;
+
+                int newQuantity = product.getQuantity() + change.getValue();
+                if (newQuantity < 0) {
+                    throw new IllegalArgumentException("Cannot reduce quantity of " + product.getName() + " below zero");
+                }
+                if (holder != null && change.getValue() < 0
+                        && newQuantity < reservations.reservedByOthers(holder, product.getId())) {
+                    throw new IllegalArgumentException("Only " + availableTo(holder, product)
+                            + " of " + product.getName() + " left");
+                }
+                newQuantities.put(product.getId(), newQuantity);
+                adjusted.add(product);
+            }
+
+            if (!store.recordQuantities(newQuantities)) return false;
+
+            adjusted.forEach(product -> applyQuantity(product, newQuantities.get(product.getId())));
+            if (holder != null) {
+                quantityChanges.keySet().forEach(productId -> reservations.release(holder, productId));
+            }
+            return true;
+        }));
+    }
+
+    /**
+     * Reserves {@code quantity} units of the product for {@code holder}, such
+     * as a cart, for the next 15 minutes. This replaces any hold the holder
+     * already had on the product and restarts its time; 0 releases it. Units
+     * on hold are not available to anyone else until they are sold through
+     * {@link #sellReserved}, released or expire.
+     *
+     * @return false if the product does not exist or fewer units are available
+     */
+    public boolean reserveStock(String holder, int productId, int quantity) {
+        if (holder == null) {
+            throw new IllegalArgumentException("Reservation holder cannot be null");
+        }
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Reserved quantity cannot be negative");
+        }
+        if (quantity == 0) {
+            reservations.release(holder, productId);
+            return true;
         }
 
-        Product product = getProductById(productId);
-        if (product == null) return false;
+        return stockLocks.withLock(productId, () -> {
+            Product product = getProductById(productId);
+            if (product == null || quantity > availableTo(holder, product)) return false;
+
+            reservations.hold(holder, productId, quantity);
+            return true;
+        });
+    }
+
+    public void releaseReservation(String holder, int productId) {
+        reservations.release(holder, productId);
+    }
 
-        product.setPrice(newPrice);
-        return saveProducts();
+    public void releaseReservations(String holder) {
+        reservations.releaseAll(holder);
     }
 
-    public boolean deleteProduct(int productId) {
-        boolean removed = products.removeIf(p -> p.getId() == productId);
-        if (removed) {
-            return saveProducts();
+    /** Units of the product that are neither sold nor on hold: the quantity that can still be promised. */
+    public int getAvailableQuantity(int productId) {
+        // Under the product's stripe, so a sale's new quantity and the holds it used up are seen together
+        return stockLocks.withLock(productId, () -> {
+            Product product = getProductById(productId);
+            return product != null ? Math.max(0, product.getQuantity() - reservations.reserved(productId)) : 0;
+        });
+    }
+
+    /** The most {@code holder} can reserve in all: the quantity minus what other holders have on hold. */
+    public int getAvailableQuantity(int productId, String holder) {
+        return stockLocks.withLock(productId, () -> {
+            Product product = getProductById(productId);
+            return product != null ? availableTo(holder, product) : 0;
+        });
+    }
+
+    private int availableTo(String holder, Product product) {
+        return Math.max(0, product.getQuantity() - reservations.reservedByOthers(holder, product.getId()));
+    }
+
+    // Indexed products tell the tracker through their listener; copies read from the mapped store have none
+    private void applyQuantity(Product product, int quantity) {
+        int oldQuantity = product.getQuantity();
+        product.setQuantity(quantity);
+        if (!catalogLoaded) {
+            lowStockTracker.quantityChanged(product, oldQuantity);
         }
-        return false;
     }
 
+    public synchronized boolean updateProductPrice(int productId, Money newPrice) {
+        if (newPrice == null || !newPrice.isPositive()) {
+            throw new IllegalArgumentException("Price must be positive");
+        }
+
+        // The price listener rewrites the product's whole column row, quantity included
+        return commit(stockLocks.withLock(productId, () -> {
+            Product product = getProductById(productId);
+            if (product == null) return false;
+
+            if (!store.recordPrice(productId, newPrice)) return false;
+
+            product.setPrice(newPrice);
+            return true;
+        }));
+    }
+
+    public synchronized boolean deleteProduct(int productId) {
+        return commit(stockLocks.withAllLocks(() -> {
+            if (!catalogLoaded) {
+                if (!mappedStore.contains(productId) || !store.recordDelete(productId)) return false;
+
+                lowStockTracker.clearThreshold(productId);
+                return true;
+            }
+
+            Product removed = productIndex.get(productId);
+            if (removed != null && store.recordDelete(productId)) {
+                removeFromList(productIndex.positionOf(productId));
+                productIndex.remove(productId);
+                nameIndex.remove(productId);
+                fuzzyIndex.remove(productId);
+                searchIndex.remove(productId);
+                categoryIndex.remove(removed);
+                priceIndex.remove(productId, removed.getPriceMinor());
+                columns.remove(productId);
+                lowStockTracker.remove(productId);
+                lowStockTracker.clearThreshold(productId);
+                removed.setChangeListener(null);
+                return true;
+            }
+            return false;
+        }));
+    }
+
+    /**
+     * With the mapped store, until something needs the whole catalog this reads
+     * the product straight from the mapped file and returns a fresh copy on
+     * every call; change it through the update methods.
+     */
     public Product getProductById(int id) {
-        return products.stream()
-                .filter(p -> p.getId() == id)
-                .findFirst()
-                .orElse(null);
+        return catalogLoaded ? productIndex.get(id) : mappedStore.read(id);
     }
 
     public Product getProductByName(String name) {
         if (name == null || name.trim().isEmpty()) return null;
 
-        return products.stream()
-                .filter(p -> p.getName().equalsIgnoreCase(name.trim()))
-                .findFirst()
-                .orElse(null);
+        ensureCatalogLoaded();
+        return productIndex.get(nameIndex.findExact(name));
+    }
+
+    /**
+     * Products whose name starts with {@code prefix}, ignoring case and extra
+     * spaces, in name order. At most {@code limit} are returned.
+     */
+    public List<Product> searchByPrefix(String prefix, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        if (prefix == null || prefix.trim().isEmpty()) return new ArrayList<>();
+
+        ensureCatalogLoaded();
+        int[] ids = nameIndex.search(prefix, limit);
+        List<Product> matches = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            matches.add(productIndex.get(id));
+        }
+        return matches;
+    }
+
+    /**
+     * Products whose name is within {@code maxDistance} single-character edits
+     * of {@code name}, ignoring case and extra spaces, closest first. Meant for
+     * names typed by hand with typos; names under five characters allow one
+     * edit at most. At most {@code limit} are returned.
+     */
+    public List<Product> searchByNameFuzzy(String name, int maxDistance, int limit) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Edit distance cannot be negative");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        if (name == null || name.trim().isEmpty()) return new ArrayList<>();
+
+        ensureCatalogLoaded();
+        int[] ids = fuzzyIndex.search(name, maxDistance, limit);
+        List<Product> matches = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            matches.add(productIndex.get(id));
+        }
+        return matches;
+    }
+
+    /**
+     * Products matching every word of {@code query} in their name or category
+     * name, ignoring case. Products matching more words by name come first,
+     * then those in stock. At most {@code limit} are returned.
+     */
+    public List<Product> search(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        if (query == null || query.trim().isEmpty()) return new ArrayList<>();
+
+        ensureCatalogLoaded();
+        int[] ids = searchIndex.search(query, limit, id -> productIndex.get(id).isInStock());
+        List<Product> matches = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            matches.add(productIndex.get(id));
+        }
+        return matches;
+    }
+
+    public synchronized List<Product> getProductsByCategory(int categoryId) {
+        ensureCatalogLoaded();
+        int[] ids = categoryIndex.productIds(categoryId);
+        List<Product> matches = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            matches.add(productIndex.get(id));
+        }
+        return matches;
     }
 
-    public List<Product> getProductsByCategory(int categoryId) {
-        return products.stream()
-                .filter(p -> p.getCategoryId() == categoryId)
-                .collect(Collectors.toList());
+    public synchronized int getCategoryProductCount(int categoryId) {
+        ensureCatalogLoaded();
+        return categoryIndex.productCount(categoryId);
     }
 
-    public List<Product> getProductsByPriceRange(float minPrice, float maxPrice) {
-        if (minPrice < 0 || maxPrice < 0 || maxPrice < minPrice) {
+    public synchronized long getCategoryStockTotal(int categoryId) {
+        ensureCatalogLoaded();
+        return categoryIndex.stockTotal(categoryId);
+    }
+
+    public List<Product> getProductsByPriceRange(Money minPrice, Money maxPrice) {
+        return getProductsByPriceRange(minPrice, maxPrice, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * One page of the products priced between {@code minPrice} and
+     * {@code maxPrice} inclusive, cheapest first: skips {@code offset}
+     * products and returns at most {@code limit}.
+     */
+    public synchronized List<Product> getProductsByPriceRange(Money minPrice, Money maxPrice, int offset, int limit) {
+        validatePriceRange(minPrice, maxPrice);
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Invalid page");
+        }
+
+        ensureCatalogLoaded();
+        int[] ids = priceIndex.range(minPrice.getMinorUnits(), maxPrice.getMinorUnits(), offset, limit);
+        List<Product> matches = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            matches.add(productIndex.get(id));
+        }
+        return matches;
+    }
+
+    public synchronized int countProductsByPriceRange(Money minPrice, Money maxPrice) {
+        validatePriceRange(minPrice, maxPrice);
+        ensureCatalogLoaded();
+        return priceIndex.countInRange(minPrice.getMinorUnits(), maxPrice.getMinorUnits());
+    }
+
+    private static void validatePriceRange(Money minPrice, Money maxPrice) {
+        if (minPrice == null || maxPrice == null || minPrice.getMinorUnits() < 0 || maxPrice.compareTo(minPrice) < 0) {
             throw new IllegalArgumentException("Invalid price range");
         }
+    }
+
+    /**
+     * Products in stock but at or under their low-stock threshold, as tracked
+     * on every quantity change.
+     */
+    public List<Product> getLowStockProducts() {
+        ensureCatalogLoaded();
+        return productsFor(lowStockTracker.lowStockIds());
+    }
+
+    public List<Product> getOutOfStockProducts() {
+        ensureCatalogLoaded();
+        return productsFor(lowStockTracker.outOfStockIds());
+    }
+
+    /**
+     * Products in stock but at or under an ad-hoc threshold, in id order.
+     * Unlike {@link #getLowStockProducts()} this scans the quantity of every
+     * product.
+     */
+    public synchronized List<Product> getLowStockProducts(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative");
+        }
+
+        ensureCatalogLoaded();
+        return productsFor(columns.lowStockIds(threshold));
+    }
+
+    /** What the stock on hand is worth at current prices. */
+    public synchronized Money getStockValue() {
+        ensureCatalogLoaded();
+        return Money.ofMinor(columns.stockValue());
+    }
+
+    public synchronized Money getCategoryStockValue(int categoryId) {
+        ensureCatalogLoaded();
+        return Money.ofMinor(columns.stockValue(categoryId));
+    }
+
+    public int getLowStockThreshold() {
+        return lowStockTracker.getDefaultThreshold();
+    }
+
+    public int getLowStockThreshold(int productId) {
+        return lowStockTracker.thresholdFor(productId);
+    }
+
+    /** Changes the threshold of every product without one of its own. */
+    public boolean setLowStockThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold cannot be negative");
+        }
 
-        return products.stream()
-                .filter(p -> p.getPrice() >= minPrice && p.getPrice() <= maxPrice)
-                .collect(Collectors.toList());
+        ensureCatalogLoaded();
+        lowStockTracker.setDefaultThreshold(threshold);
+        lowStockTracker.build(products);
+        return saveStockThresholds();
     }
 
-    public List<Product> getLowStockProducts(int threshold) {
+    public boolean setLowStockThreshold(int productId, int threshold) {
         if (threshold < 0) {
             throw new IllegalArgumentException("Threshold cannot be negative");
         }
 
-        return products.stream()
-                .filter(p -> p.getQuantity() <= threshold)
-                .collect(Collectors.toList());
+        ensureCatalogLoaded();
+        Product product = getProductById(productId);
+        if (product == null) return false;
+
+        lowStockTracker.setThreshold(productId, threshold);
+        lowStockTracker.update(product);
+        return saveStockThresholds();
+    }
+
+    public boolean clearLowStockThreshold(int productId) {
+        ensureCatalogLoaded();
+        Product product = getProductById(productId);
+        if (product == null) return false;
+
+        lowStockTracker.clearThreshold(productId);
+        lowStockTracker.update(product);
+        return saveStockThresholds();
+    }
+
+    /**
+     * Registers a subscriber for stock level changes: a product becoming low,
+     * selling out, or recovering. Subscribers run on the thread that changed
+     * the stock, so they should return quickly.
+     */
+    public void addStockAlertListener(Consumer<StockAlert> listener) {
+        lowStockTracker.subscribe(Objects.requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    public void removeStockAlertListener(Consumer<StockAlert> listener) {
+        lowStockTracker.unsubscribe(listener);
+    }
+
+    public void displayLowStockWarning() {
+        printStockWarning(getLowStockProducts(), "LOW STOCK ITEMS (Default threshold: " + getLowStockThreshold() + ")");
+        List<Product> soldOut = getOutOfStockProducts();
+        if (!soldOut.isEmpty()) {
+            printStockWarning(soldOut, "OUT OF STOCK ITEMS");
+        }
     }
 
     public void displayLowStockWarning(int threshold) {
-        List<Product> lowStockItems = getLowStockProducts(threshold);
+        printStockWarning(getLowStockProducts(threshold), "LOW STOCK ITEMS (Threshold: " + threshold + ")");
+    }
 
-        if (lowStockItems.isEmpty()) {
+    private void printStockWarning(List<Product> items, String title) {
+        if (items.isEmpty()) {
             System.out.println("✅ No products below stock threshold");
             return;
         }
 
-        System.out.println("\n⚠️ LOW STOCK ITEMS (Threshold: " + threshold + ")");
+        System.out.println("\n⚠️ " + title);
         System.out.println("----------------------------------------");
         System.out.printf("%-5s %-20s %-10s %-5s\n", "ID", "Name", "Price", "Qty");
 
-        lowStockItems.forEach(p ->
-                System.out.printf("%-5d %-20s %-10.2f %-5d\n",
+        items.forEach(p ->
+                System.out.printf("%-5d %-20s %-10s %-5d\n",
                         p.getId(), p.getName(), p.getPrice(), p.getQuantity())
         );
     }
 
+    private List<Product> productsFor(int[] ids) {
+        List<Product> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Product product = productIndex.get(id);
+            if (product != null) result.add(product);
+        }
+        return result;
+    }
+
     public void displayAllProducts() {
+        ensureCatalogLoaded();
         if (products.isEmpty()) {
             System.out.println("❌ No products available");
             return;
@@ -244,7 +936,7 @@ public class ProductService {
                 "ID", "Name", "Category", "Price", "Qty", "Status");
 
         products.forEach(p ->
-                System.out.printf("%-5d %-20s %-15s %-10.2f %-8d %-10s\n",
+                System.out.printf("%-5d %-20s %-15s %-10s %-8d %-10s\n",
                         p.getId(),
                         p.getName(),
                         getCategoryName(p.getCategoryId()),
@@ -258,38 +950,120 @@ public class ProductService {
         System.out.println("\n📦 PRODUCT CATEGORIES");
         System.out.println("----------------------");
         categories.forEach((id, name) ->
-                System.out.printf("%d. %s\n", id, name));
+                System.out.printf("%d. %s (%d products, %d in stock, worth %s)\n",
+                        id, name, getCategoryProductCount(id), getCategoryStockTotal(id),
+                        getCategoryStockValue(id).format()));
     }
 
-    @SuppressWarnings("unchecked")
     private void loadProducts() {
-        File file = new File(PRODUCTS_FILE);
-        if (!file.exists()) return;
+        if (mappedStore == null) {
+            ensureCatalogLoaded();
+            return;
+        }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            products = (List<Product>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("❌ Error loading products: " + e.getMessage());
-            products = new ArrayList<>();
+        try {
+            if (mappedStore.open()) {
+                migrateJournal();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Running on a half-open store would lose every change, and the log-based files may be long out of date
+            try {
+                mappedStore.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw new IllegalStateException("Cannot open the mapped product store in " + DataDirectory.path()
+                    + "; restore its files or start without -D" + STORE_PROPERTY + "=" + MAPPED_STORE, e);
         }
     }
 
-    private synchronized boolean saveProducts() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(PRODUCTS_FILE))) {
-            oos.writeObject(products);
-            return true;
-        } catch (IOException e) {
-            System.err.println("❌ Error saving products: " + e.getMessage());
-            return false;
+    // The mapped store starts out with whatever catalog the log-based store had saved
+    private void migrateJournal() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(DataDirectory.path()), "products.{dat,log.*}")) {
+            if (!files.iterator().hasNext()) return;
+        }
+
+        List<Product> existing = ProductJournal.readCatalog(PRODUCTS_FILE);
+        existing.stream().mapToInt(Product::getId).max().ifPresent(productIds::ensureAbove);
+        mappedStore.writeSnapshot(existing);
+    }
+
+    /**
+     * Reads the whole catalog into memory and builds the indexes. The log-based
+     * store does this at startup; the mapped store puts it off until a search,
+     * listing or report first needs it, so opening it stays cheap.
+     */
+    private void ensureCatalogLoaded() {
+        if (catalogLoaded) return;
+
+        synchronized (this) {
+            if (catalogLoaded) return;
+
+            stockLocks.withAllLocks(() -> {
+                try {
+                    products = store.load();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("❌ Error loading products: " + e.getMessage());
+                    products = new ArrayList<>();
+                }
+                rebuildIndex();
+                catalogLoaded = true;
+            });
+        }
+    }
+
+    // The last product moves into the gap, so listings keep insertion order only until a delete
+    private void removeFromList(int position) {
+        Product last = products.remove(products.size() - 1);
+        if (position < products.size()) {
+            products.set(position, last);
+            productIndex.put(last, position);
+        }
+    }
+
+    private void rebuildIndex() {
+        productIndex.clear();
+        for (int position = 0; position < products.size(); position++) {
+            productIndex.put(products.get(position), position);
+        }
+        nameIndex.build(products);
+        fuzzyIndex.build(products);
+        categoryIndex.build(products);
+        priceIndex.build(products);
+        columns.build(products);
+        lowStockTracker.build(products);
+        products.forEach(product -> product.setChangeListener(indexMaintainer));
+        products.stream().mapToInt(Product::getId).max().ifPresent(productIds::ensureAbove);
+        searchIndex.build(products, this::getCategoryName);
+    }
+
+    // Mutations are logged individually; the full catalog is only rewritten by periodic compaction.
+    // Callers must not hold any stripe: with all of them held, no stock change sits between
+    // being logged and being applied, so the copies the snapshot is written from match the log.
+    private boolean commit(boolean logged) {
+        if (store.needsCompaction()) {
+            stockLocks.withAllLocks(() -> store.compactIfNeeded(this::copyCatalog));
+        }
+        return logged;
+    }
+
+    // The compactor serializes these in the background, so it must not see later changes
+    private List<Product> copyCatalog() {
+        List<Product> copies = new ArrayList<>(products.size());
+        for (Product product : products) {
+            copies.add(new Product(product.getId(), product.getCategoryId(), product.getName(),
+                    product.getPrice(), product.getQuantity(), product.getDateAdded()));
         }
+        return copies;
     }
 
     private boolean productExists(int productId) {
-        return products.stream().anyMatch(p -> p.getId() == productId);
+        return catalogLoaded ? productIndex.containsKey(productId) : mappedStore.contains(productId);
     }
 
     // ========== Getters ==========
     public List<Product> getAllProducts() {
+        ensureCatalogLoaded();
         return new ArrayList<>(products);
     }
 
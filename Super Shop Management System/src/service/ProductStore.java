@@ -0,0 +1,36 @@
+package service;
+
+import model.Money;
+import model.Product;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Where {@link ProductService} persists the catalog. Each mutation is recorded
+ * as it happens; {@link #writeSnapshot} replaces the stored catalog wholesale
+ * after a bulk change. The record methods report failures themselves and
+ * return false.
+ */
+interface ProductStore {
+    List<Product> load() throws IOException;
+
+    boolean recordPut(Product product);
+
+    boolean recordQuantity(int productId, int quantity);
+
+    boolean recordQuantities(Map<Integer, Integer> quantities);
+
+    boolean recordPrice(int productId, Money price);
+
+    boolean recordDelete(int productId);
+
+    /** Whether {@link #compactIfNeeded} would do anything; cheap enough to ask after every mutation. */
+    boolean needsCompaction();
+
+    void compactIfNeeded(Supplier<List<Product>> catalog);
+
+    boolean writeSnapshot(List<Product> products);
+}
@@ -0,0 +1,231 @@
+package service;
+
+import model.Money;
+import model.Purchase;
+import model.PurchaseItem;
+import util.BinaryReader;
+import util.BinaryWriter;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Durable, append-only record of completed purchases, split into one segment
+ * file per calendar day under {@code data/purchases}. Each checkout appends one
+ * compact binary record to its day's segment; history is never rewritten and
+ * past days are never touched again. Checkouts that land in the same
+ * persistence window share one sync of the segment. On open, a torn record
+ * left by a crash is cut off so new records follow the last intact one.
+ */
+class PurchaseLedger implements Closeable {
+    private static final int LEDGER_MAGIC = 0x50555243; // "PURC"
+    private static final short LEDGER_VERSION = 3;
+    private static final short FLOAT_AMOUNT_LEDGER_VERSION = 1; // amounts written as float before they were fixed-point
+    private static final short FIXED_WIDTH_LEDGER_VERSION = 2;  // records written before they used varints
+    private static final int RECORD_BUFFER_SIZE = 512;
+    private static final String SEGMENT_PREFIX = "purchases-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final DateTimeFormatter SEGMENT_DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Path ledgerDir;
+    private final Path legacyLedgerFile;
+    private final PersistenceScheduler.Store segmentSync;
+    private AppendLog openSegment;
+    private long openSegmentDay;
+
+    PurchaseLedger(String ledgerDir, String legacyLedgerFile) {
+        this.ledgerDir = Paths.get(ledgerDir);
+        this.legacyLedgerFile = Paths.get(legacyLedgerFile);
+        this.segmentSync = PersistenceScheduler.shared().register("purchase ledger", this::syncOpenSegment);
+    }
+
+    /**
+     * Reads every intact purchase, grouped by the day segment it was written to,
+     * in ascending day order.
+     */
+    synchronized SortedMap<Long, List<Purchase>> load() throws IOException {
+        Files.createDirectories(ledgerDir);
+        migrateLegacyLedger();
+
+        SortedMap<Long, List<Purchase>> purchasesByDay = new TreeMap<>();
+        for (Map.Entry<Long, Path> segment : listSegments().entrySet()) {
+            List<Purchase> purchases = new ArrayList<>();
+            Path path = segment.getValue();
+            AppendLog.ReplayResult result = AppendLog.replay(path, LEDGER_MAGIC,
+                    (version, in) -> purchases.add(decode(version, in)));
+            if (result.version() != -1 && result.version() != LEDGER_VERSION) {
+                // Today's segment may still be appended to, so it has to be in the current format
+                rewriteSegment(path, purchases);
+            } else {
+                AppendLog.truncate(path, result.validLength());
+            }
+            if (!purchases.isEmpty()) {
+                purchasesByDay.put(segment.getKey(), purchases);
+            }
+        }
+        return purchasesByDay;
+    }
+
+    /**
+     * Appends one purchase to the segment of the day it was made and schedules
+     * a sync of that segment.
+     *
+     * @return completes once the record is on stable storage
+     */
+    synchronized CompletableFuture<Void> append(Purchase purchase) throws IOException {
+        segmentFor(PurchasePartition.dayOf(purchase.getPurchaseDate())).append(encode(purchase));
+        return segmentSync.markDirty();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (openSegment != null) {
+            openSegment.close();
+            openSegment = null;
+        }
+    }
+
+    // The sync runs outside the ledger's monitor so checkouts are not held up by it
+    private void syncOpenSegment() throws IOException {
+        AppendLog segment;
+        synchronized (this) {
+            segment = openSegment;
+        }
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    private AppendLog segmentFor(long epochDay) throws IOException {
+        if (openSegment == null || openSegmentDay != epochDay) {
+            close();
+            openSegment = new AppendLog(segmentPath(epochDay), LEDGER_MAGIC, LEDGER_VERSION);
+            openSegmentDay = epochDay;
+        }
+        return openSegment;
+    }
+
+    /**
+     * Splits the single-file ledger written by earlier versions into day
+     * segments. Each day's segment is rewritten through a temporary file with
+     * the purchases it does not already have, so a migration cut short by a
+     * crash can run again from the start without recording anything twice.
+     * The old file is only deleted once every segment is in place.
+     */
+    private void migrateLegacyLedger() throws IOException {
+        if (!Files.exists(legacyLedgerFile)) return;
+
+        SortedMap<Long, List<Purchase>> legacyByDay = new TreeMap<>();
+        AppendLog.replay(legacyLedgerFile, LEDGER_MAGIC, (version, in) -> {
+            Purchase purchase = decode(version, in);
+            legacyByDay.computeIfAbsent(PurchasePartition.dayOf(purchase.getPurchaseDate()), day -> new ArrayList<>())
+                    .add(purchase);
+        });
+
+        close();
+        for (Map.Entry<Long, List<Purchase>> day : legacyByDay.entrySet()) {
+            Path path = segmentPath(day.getKey());
+            List<Purchase> purchases = new ArrayList<>();
+            if (Files.exists(path)) {
+                AppendLog.replay(path, LEDGER_MAGIC, (version, in) -> purchases.add(decode(version, in)));
+            }
+            Set<String> migrated = new HashSet<>();
+            purchases.forEach(purchase -> migrated.add(purchase.getPurchaseId()));
+
+            int before = purchases.size();
+            for (Purchase purchase : day.getValue()) {
+                if (migrated.add(purchase.getPurchaseId())) {
+                    purchases.add(purchase);
+                }
+            }
+            if (purchases.size() > before) {
+                rewriteSegment(path, purchases);
+            }
+        }
+        DataFiles.syncDirectory(ledgerDir);
+        Files.delete(legacyLedgerFile);
+    }
+
+    private static void rewriteSegment(Path path, List<Purchase> purchases) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        List<byte[]> records = new ArrayList<>(purchases.size());
+        for (Purchase purchase : purchases) {
+            records.add(encode(purchase));
+        }
+        try (AppendLog upgraded = new AppendLog(temp, LEDGER_MAGIC, LEDGER_VERSION)) {
+            if (!records.isEmpty()) {
+                upgraded.append(records);
+            }
+            upgraded.force();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private SortedMap<Long, Path> listSegments() throws IOException {
+        SortedMap<Long, Path> segments = new TreeMap<>();
+        try (Stream<Path> files = Files.list(ledgerDir)) {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    String day = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                    try {
+                        segments.put(LocalDate.parse(day, SEGMENT_DAY).toEpochDay(), path);
+                    } catch (RuntimeException e) {
+                        System.err.println("⚠️ Skipping unrecognised ledger file " + name);
+                    }
+                }
+            });
+        }
+        return segments;
+    }
+
+    private Path segmentPath(long epochDay) {
+        return ledgerDir.resolve(SEGMENT_PREFIX + LocalDate.ofEpochDay(epochDay).format(SEGMENT_DAY) + SEGMENT_SUFFIX);
+    }
+
+    private static byte[] encode(Purchase purchase) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_BUFFER_SIZE);
+        try (BinaryWriter out = new BinaryWriter(bytes, RECORD_BUFFER_SIZE)) {
+            purchase.writeBinary(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Purchase decode(int version, DataInputStream in) throws IOException {
+        if (version <= FIXED_WIDTH_LEDGER_VERSION) {
+            return decodeFixedWidth(version, in);
+        }
+        return Purchase.readBinary(new BinaryReader(in, RECORD_BUFFER_SIZE));
+    }
+
+    // Records from segments written before varints: fixed-width fields and float or long amounts
+    private static Purchase decodeFixedWidth(int version, DataInputStream in) throws IOException {
+        String purchaseId = in.readUTF();
+        String customerMobile = in.readUTF();
+        Date purchaseDate = new Date(in.readLong());
+        Money subtotal = readAmount(version, in);
+        Money discount = readAmount(version, in);
+        Money total = readAmount(version, in);
+        String paymentMethod = in.readUTF();
+        String status = in.readUTF();
+
+        int itemCount = in.readInt();
+        List<PurchaseItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new PurchaseItem(in.readInt(), in.readUTF(), readAmount(version, in), in.readInt()));
+        }
+
+        return new Purchase(purchaseId, customerMobile, purchaseDate, items,
+                subtotal, discount, total, paymentMethod, status);
+    }
+
+    private static Money readAmount(int version, DataInputStream in) throws IOException {
+        return version == FLOAT_AMOUNT_LEDGER_VERSION ? Money.of(in.readFloat()) : Money.ofMinor(in.readLong());
+    }
+}
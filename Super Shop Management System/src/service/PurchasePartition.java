@@ -0,0 +1,31 @@
+package service;
+
+import model.Purchase;
+
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * One calendar day of sales. Reports only need the day's rollup, so that is
+ * all a partition keeps; each purchase is folded into it as it is recorded,
+ * and the receipts themselves live in the customers' histories and the ledger.
+ */
+class PurchasePartition {
+    private final SalesRollup rollup;
+
+    PurchasePartition() {
+        this.rollup = new SalesRollup();
+    }
+
+    static long dayOf(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    void add(Purchase purchase) {
+        rollup.record(purchase);
+    }
+
+    SalesRollup getRollup() {
+        return rollup;
+    }
+}
@@ -1,65 +1,81 @@
 package service;
 
+import model.Cart;
 import model.Purchase;
-import model.Product;
 import model.CartItem;
 import model.PurchaseItem;
 import java.io.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 public class PurchaseService {
-    private static final String PURCHASES_FILE = "data/purchases.dat";
-    private static final String TRANSACTIONS_DIR = "data/transactions";
+    private static final String LEDGER_DIR = DataDirectory.resolve("purchases");
+    private static final String LEGACY_LEDGER_FILE = DataDirectory.resolve("purchases.log");
+    private static final String TRANSACTIONS_DIR = DataDirectory.resolve("transactions");
+    private static final String PURCHASE_ID_FILE = DataDirectory.resolve("purchase_id.seq");
+    private static final String PURCHASE_ID_PREFIX = "PUR-";
+    public static final int NEWEST_PURCHASES = Integer.MAX_VALUE;
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
     private static final SimpleDateFormat DATETIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
     private final CartService cartService;
     private final ProductService productService;
-    private List<Purchase> purchases;
+    private final PurchaseLedger ledger;
+    private final IdAllocator purchaseIds;
+    private final Map<String, List<Purchase>> purchasesByCustomer;
+    private final NavigableMap<Long, PurchasePartition> partitionsByDay;
 
     public PurchaseService(CartService cartService) {
         this.cartService = Objects.requireNonNull(cartService, "CartService cannot be null");
         this.productService = cartService.getProductService();
-        this.purchases = new ArrayList<>();
+        this.ledger = new PurchaseLedger(LEDGER_DIR, LEGACY_LEDGER_FILE);
+        this.purchaseIds = new IdAllocator(PURCHASE_ID_FILE);
+        this.purchasesByCustomer = new HashMap<>();
+        this.partitionsByDay = new TreeMap<>();
         ensureDirectoriesExist();
         loadPurchases();
     }
 
     public boolean checkout(String customerMobile, boolean isVipCustomer) {
-        if (cartService.isEmpty()) {
+        if (cartService.isEmpty(customerMobile)) {
             System.out.println("❌ Cannot checkout empty cart");
             return false;
         }
 
-        for (CartItem item : cartService.getCartItems()) {
-            Product product = productService.getProductById(item.getProductId());
-            if (product == null || product.getQuantity() < item.getQuantity()) {
+        for (CartItem item : cartService.getCartItems(customerMobile)) {
+            int available = productService.getAvailableQuantity(item.getProductId(), customerMobile);
+            if (available < item.getQuantity()) {
                 System.out.printf("❌ Insufficient stock for %s (Available: %d, Requested: %d)\n",
-                        product != null ? product.getName() : "Product",
-                        product != null ? product.getQuantity() : 0,
-                        item.getQuantity());
+                        item.getName(), available, item.getQuantity());
                 return false;
             }
         }
 
         try {
-            boolean checkoutSuccess = cartService.checkout(isVipCustomer);
-            if (!checkoutSuccess) {
+            Cart checkedOut = cartService.checkout(customerMobile, isVipCustomer);
+            if (checkedOut == null) {
                 return false;
             }
 
             Purchase purchase = new Purchase(
+                    nextPurchaseId(),
                     customerMobile,
-                    convertCartItemsToPurchaseItems(cartService.getCartItems()),
-                    cartService.calculateSubtotal(),
-                    cartService.calculateDiscount(),
+                    convertCartItemsToPurchaseItems(checkedOut.getItems()),
+                    checkedOut.getSubtotal(),
+                    checkedOut.getDiscount(),
                     "Cash"
             );
 
-            purchases.add(purchase);
-            savePurchases();
+            // Waits outside this service's monitor, so checkouts in the same window share one sync
+            try {
+                recordPurchase(purchase).join();
+            } catch (CompletionException e) {
+                System.err.println("❌ Error saving purchase " + purchase.getPurchaseId() + ": "
+                        + e.getCause().getMessage());
+            }
             saveTransactionReceipt(purchase);
 
             System.out.println("✅ Checkout successful! Transaction ID: " + purchase.getPurchaseId());
@@ -83,28 +99,66 @@ public class PurchaseService {
                 .collect(Collectors.toList());
     }
 
-    public void viewPurchaseHistory(String customerMobile) {
-        List<Purchase> customerPurchases = purchases.stream()
-                .filter(p -> p.getCustomerMobile().equals(customerMobile))
-                .sorted(Comparator.comparing(Purchase::getPurchaseDate).reversed())
-                .collect(Collectors.toList());
+    /**
+     * Returns one page of a customer's purchases, newest first.
+     * The cursor counts from the oldest end, so purchases made while the customer
+     * is paging do not shift the pages that follow.
+     *
+     * @param cursor number of older purchases still to page through, i.e. the page
+     *               ends just before this position ({@link #NEWEST_PURCHASES} for the first page)
+     */
+    public synchronized List<Purchase> getPurchaseHistory(String customerMobile, int cursor, int limit) {
+        if (cursor < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Invalid history cursor or page size");
+        }
+
+        List<Purchase> history = purchasesByCustomer.getOrDefault(customerMobile, Collections.emptyList());
+        int end = Math.min(cursor, history.size());
+        int start = Math.max(end - limit, 0);
+        List<Purchase> page = new ArrayList<>(end - start);
+        for (int i = end - 1; i >= start; i--) {
+            page.add(history.get(i));
+        }
+        return page;
+    }
+
+    public synchronized int getPurchaseCount(String customerMobile) {
+        return purchasesByCustomer.getOrDefault(customerMobile, Collections.emptyList()).size();
+    }
+
+    /**
+     * Prints one page of a customer's purchase history, newest first.
+     *
+     * @return the cursor for the next (older) page, or -1 if there is none
+     */
+    public int viewPurchaseHistory(String customerMobile, int cursor, int pageSize) {
+        List<Purchase> customerPurchases;
+        int pageEnd;
+        synchronized (this) {
+            customerPurchases = getPurchaseHistory(customerMobile, cursor, pageSize);
+            pageEnd = Math.min(cursor, getPurchaseCount(customerMobile));
+        }
 
         if (customerPurchases.isEmpty()) {
-            System.out.println("❌ No purchase history found");
-            return;
+            if (cursor == NEWEST_PURCHASES) {
+                System.out.println("❌ No purchase history found");
+            }
+            return -1;
         }
 
-        System.out.println("\n🛒 PURCHASE HISTORY FOR: " + customerMobile);
-        System.out.println("══════════════════════════════════════");
+        if (cursor == NEWEST_PURCHASES) {
+            System.out.println("\n🛒 PURCHASE HISTORY FOR: " + customerMobile);
+            System.out.println("══════════════════════════════════════");
+        }
 
         customerPurchases.forEach(purchase -> {
             System.out.println("\nTransaction ID: " + purchase.getPurchaseId());
             System.out.println("Date: " + DATETIME_FORMAT.format(purchase.getPurchaseDate()));
-            System.out.printf("Total: %.2f\n", purchase.getTotal());
+            System.out.println("Total: " + purchase.getTotal());
             System.out.println("Items:");
 
             purchase.getItems().forEach(item -> {
-                System.out.printf("- %-20s (ID: %d) %3d x %-6.2f = %-8.2f\n",
+                System.out.printf("- %-20s (ID: %d) %3d x %-6s = %-8s\n",
                         item.getProductName(),
                         item.getProductId(),
                         item.getQuantity(),
@@ -112,68 +166,54 @@ public class PurchaseService {
                         item.getItemTotal());
             });
         });
+
+        int nextCursor = pageEnd - customerPurchases.size();
+        return nextCursor > 0 ? nextCursor : -1;
+    }
+
+    // Sums the pre-aggregated rollups of every day from startDay through endDay
+    private synchronized SalesRollup getSalesRollup(long startDay, long endDay) {
+        SalesRollup total = new SalesRollup();
+        if (endDay < startDay) return total;
+
+        partitionsByDay.subMap(startDay, true, endDay, true)
+                .values()
+                .forEach(partition -> total.merge(partition.getRollup()));
+        return total;
     }
 
+    /**
+     * Reports on whole calendar days: everything from the start of
+     * {@code startDate}'s day through the end of {@code endDate}'s day.
+     */
     public void generateSalesReport(Date startDate, Date endDate) {
-        List<Purchase> filteredPurchases = purchases.stream()
-                .filter(p -> !p.getPurchaseDate().before(startDate) &&
-                        !p.getPurchaseDate().after(endDate))
-                .sorted(Comparator.comparing(Purchase::getPurchaseDate))
-                .collect(Collectors.toList());
+        SalesRollup sales = getSalesRollup(PurchasePartition.dayOf(startDate), PurchasePartition.dayOf(endDate));
 
-        if (filteredPurchases.isEmpty()) {
+        if (sales.getTransactionCount() == 0) {
             System.out.println("❌ No sales found for the selected period");
             return;
         }
 
-        double totalRevenue = filteredPurchases.stream()
-                .mapToDouble(Purchase::getTotal)
-                .sum();
-        int totalItemsSold = filteredPurchases.stream()
-                .flatMap(p -> p.getItems().stream())
-                .mapToInt(PurchaseItem::getQuantity)
-                .sum();
-
         System.out.println("\n════════════ SALES REPORT ════════════");
         System.out.printf("Period: %s to %s\n",
                 DATE_FORMAT.format(startDate), DATE_FORMAT.format(endDate));
-        System.out.printf("Total Transactions: %d\n", filteredPurchases.size());
-        System.out.printf("Total Items Sold: %d\n", totalItemsSold);
-        System.out.printf("Total Revenue: %.2f\n", totalRevenue);
+        System.out.printf("Total Transactions: %d\n", sales.getTransactionCount());
+        System.out.printf("Total Items Sold: %d\n", sales.getItemsSold());
+        System.out.println("Total Revenue: " + sales.getRevenue());
         System.out.println("══════════════════════════════════════");
 
-        Map<Integer, PurchaseItem> productSales = new HashMap<>();
-        filteredPurchases.forEach(purchase ->
-                purchase.getItems().forEach(item -> {
-                    if (productSales.containsKey(item.getProductId())) {
-                        PurchaseItem existing = productSales.get(item.getProductId());
-                        productSales.put(item.getProductId(),
-                                new PurchaseItem(
-                                        item.getProductId(),
-                                        item.getProductName(),
-                                        item.getUnitPrice(),
-                                        existing.getQuantity() + item.getQuantity()
-                                ));
-                    } else {
-                        productSales.put(item.getProductId(), item);
-                    }
-                })
-        );
-
         System.out.println("\nProduct-wise Sales:");
-        System.out.printf("%-5s %-25s %10s %12s\n", "ID", "Name", "Qty Sold", "Revenue");
-        System.out.println("------------------------------------------------");
-
-        productSales.values().stream()
-                .sorted((a, b) -> Integer.compare(b.getQuantity(), a.getQuantity()))
-                .forEach(item -> {
-                    double revenue = item.getQuantity() * item.getUnitPrice();
-                    System.out.printf("%-5d %-25s %10d %12.2f\n",
-                            item.getProductId(),
-                            item.getProductName(),
-                            item.getQuantity(),
-                            revenue);
-                });
+        System.out.printf("%-5s %-25s %10s %12s %8s\n", "ID", "Name", "Qty Sold", "Revenue", "Orders");
+        System.out.println("---------------------------------------------------------");
+
+        sales.getProductSales().stream()
+                .sorted((a, b) -> Long.compare(b.getUnitsSold(), a.getUnitsSold()))
+                .forEach(cell -> System.out.printf("%-5d %-25s %10d %12s %8d\n",
+                        cell.getProductId(),
+                        cell.getProductName(),
+                        cell.getUnitsSold(),
+                        cell.getRevenue(),
+                        cell.getTransactionCount()));
     }
 
     private void printReceipt(Purchase purchase) {
@@ -187,7 +227,7 @@ public class PurchaseService {
         System.out.println("------------------------------------------------");
 
         purchase.getItems().forEach(item -> {
-            System.out.printf("%-5d %-25s %10.2f %8d %12.2f\n",
+            System.out.printf("%-5d %-25s %10s %8d %12s\n",
                     item.getProductId(),
                     item.getProductName(),
                     item.getUnitPrice(),
@@ -196,33 +236,62 @@ public class PurchaseService {
         });
 
         System.out.println("\n------------------------------------------------");
-        System.out.printf("%40s: %12.2f\n", "Subtotal", purchase.getSubtotal());
-        if (purchase.getDiscount() > 0) {
-            System.out.printf("%40s: %12.2f\n", "Discount", purchase.getDiscount());
+        System.out.printf("%40s: %12s\n", "Subtotal", purchase.getSubtotal());
+        if (purchase.getDiscount().isPositive()) {
+            System.out.printf("%40s: %12s\n", "Discount", purchase.getDiscount());
         }
-        System.out.printf("%40s: %12.2f\n", "TOTAL", purchase.getTotal());
+        System.out.printf("%40s: %12s\n", "TOTAL", purchase.getTotal());
         System.out.println("══════════════════════════════════════\n");
     }
 
-    @SuppressWarnings("unchecked")
     private void loadPurchases() {
-        File file = new File(PURCHASES_FILE);
-        if (!file.exists()) return;
-
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            purchases = (List<Purchase>) ois.readObject();
-        } catch (Exception e) {
+        try {
+            ledger.load().values().forEach(purchases -> purchases.forEach(purchase -> {
+                indexPurchase(purchase);
+                reserveLoadedId(purchase.getPurchaseId());
+            }));
+        } catch (IOException | RuntimeException e) {
             System.err.println("❌ Error loading purchases: " + e.getMessage());
-            purchases = new ArrayList<>();
         }
     }
 
-    private synchronized void savePurchases() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(PURCHASES_FILE))) {
-            oos.writeObject(purchases);
+    private String nextPurchaseId() {
+        return String.format("%s%08d", PURCHASE_ID_PREFIX, purchaseIds.next());
+    }
+
+    // Older ids were timestamp based and never collide with the sequence; only sequence ids need reserving
+    private void reserveLoadedId(String purchaseId) {
+        if (purchaseId == null || !purchaseId.startsWith(PURCHASE_ID_PREFIX)) return;
+
+        String sequence = purchaseId.substring(PURCHASE_ID_PREFIX.length());
+        if (sequence.isEmpty() || sequence.length() > 18 || !sequence.chars().allMatch(Character::isDigit)) return;
+        purchaseIds.ensureAbove(Long.parseLong(sequence));
+    }
+
+    // Customer histories stay in ascending date order; new purchases almost always go at the end
+    private void indexPurchase(Purchase purchase) {
+        partitionsByDay.computeIfAbsent(PurchasePartition.dayOf(purchase.getPurchaseDate()), day -> new PurchasePartition())
+                .add(purchase);
+
+        List<Purchase> history = purchasesByCustomer.computeIfAbsent(
+                purchase.getCustomerMobile(), mobile -> new ArrayList<>());
+        int position = history.size();
+        while (position > 0 && history.get(position - 1).getPurchaseDate().after(purchase.getPurchaseDate())) {
+            position--;
+        }
+        history.add(position, purchase);
+    }
+
+    // The purchase is indexed at once; the future completes once its ledger record is on disk
+    private synchronized CompletableFuture<Void> recordPurchase(Purchase purchase) {
+        CompletableFuture<Void> durable;
+        try {
+            durable = ledger.append(purchase);
         } catch (IOException e) {
-            System.err.println("❌ Error saving purchases: " + e.getMessage());
+            durable = CompletableFuture.failedFuture(e);
         }
+        indexPurchase(purchase);
+        return durable;
     }
 
     private void saveTransactionReceipt(Purchase purchase) {
@@ -238,7 +307,7 @@ public class PurchaseService {
             writer.println("------------------------------------------------");
 
             purchase.getItems().forEach(item -> {
-                writer.printf("%-5d %-25s %10.2f %8d %12.2f\n",
+                writer.printf("%-5d %-25s %10s %8d %12s\n",
                         item.getProductId(),
                         item.getProductName(),
                         item.getUnitPrice(),
@@ -247,11 +316,11 @@ public class PurchaseService {
             });
 
             writer.println("\n------------------------------------------------");
-            writer.printf("%40s: %12.2f\n", "Subtotal", purchase.getSubtotal());
-            if (purchase.getDiscount() > 0) {
-                writer.printf("%40s: %12.2f\n", "Discount", purchase.getDiscount());
+            writer.printf("%40s: %12s\n", "Subtotal", purchase.getSubtotal());
+            if (purchase.getDiscount().isPositive()) {
+                writer.printf("%40s: %12s\n", "Discount", purchase.getDiscount());
             }
-            writer.printf("%40s: %12.2f\n", "TOTAL", purchase.getTotal());
+            writer.printf("%40s: %12s\n", "TOTAL", purchase.getTotal());
             writer.println("══════════════════════════════════════");
         } catch (FileNotFoundException e) {
             System.err.println("❌ Error saving transaction receipt: " + e.getMessage());
@@ -260,6 +329,6 @@ public class PurchaseService {
 
     private void ensureDirectoriesExist() {
         new File(TRANSACTIONS_DIR).mkdirs();
-        new File("data").mkdirs();
+        new File(DataDirectory.path()).mkdirs();
     }
 }
\ No newline at end of file
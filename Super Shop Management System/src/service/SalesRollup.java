@@ -0,0 +1,105 @@
+package service;
+
+import model.Money;
+import model.Purchase;
+import model.PurchaseItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pre-aggregated sales figures: overall totals plus one cell per product.
+ * Each day partition keeps one that is updated as purchases are recorded, and
+ * reports merge the cells of the days they cover instead of re-reading receipts.
+ * Revenue is summed in minor units, so totals are exact however many lines they cover.
+ */
+class SalesRollup {
+    static class ProductSales {
+        private final int productId;
+        private String productName;
+        private long unitsSold;
+        private long revenue;
+        private int transactionCount;
+
+        private ProductSales(int productId, String productName) {
+            this.productId = productId;
+            this.productName = productName;
+        }
+
+        int getProductId() {
+            return productId;
+        }
+
+        String getProductName() {
+            return productName;
+        }
+
+        long getUnitsSold() {
+            return unitsSold;
+        }
+
+        Money getRevenue() {
+            return Money.ofMinor(revenue);
+        }
+
+        int getTransactionCount() {
+            return transactionCount;
+        }
+    }
+
+    private final Map<Integer, ProductSales> productSales = new HashMap<>();
+    private int transactionCount;
+    private long itemsSold;
+    private long revenue;
+
+    void record(Purchase purchase) {
+        transactionCount++;
+        revenue = Math.addExact(revenue, purchase.getTotalMinor());
+
+        for (PurchaseItem item : purchase.getItems()) {
+            ProductSales cell = cellFor(item.getProductId(), item.getProductName());
+            cell.unitsSold += item.getQuantity();
+            cell.revenue = Math.addExact(cell.revenue, item.getItemTotalMinor());
+            cell.transactionCount++;
+            itemsSold += item.getQuantity();
+        }
+    }
+
+    void merge(SalesRollup other) {
+        transactionCount += other.transactionCount;
+        itemsSold += other.itemsSold;
+        revenue = Math.addExact(revenue, other.revenue);
+
+        for (ProductSales source : other.productSales.values()) {
+            ProductSales cell = cellFor(source.productId, source.productName);
+            cell.unitsSold += source.unitsSold;
+            cell.revenue = Math.addExact(cell.revenue, source.revenue);
+            cell.transactionCount += source.transactionCount;
+        }
+    }
+
+    int getTransactionCount() {
+        return transactionCount;
+    }
+
+    long getItemsSold() {
+        return itemsSold;
+    }
+
+    Money getRevenue() {
+        return Money.ofMinor(revenue);
+    }
+
+    Collection<ProductSales> getProductSales() {
+        return new ArrayList<>(productSales.values());
+    }
+
+    // Keeps the most recently seen name so renamed products report under their current name
+    private ProductSales cellFor(int productId, String productName) {
+        ProductSales cell = productSales.computeIfAbsent(productId, id -> new ProductSales(id, productName));
+        cell.productName = productName;
+        return cell;
+    }
+}
@@ -0,0 +1,86 @@
+package service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Striped locks for stock changes. Each product id maps to one of a fixed
+ * number of stripes, so baskets with different products usually take
+ * different locks and run in parallel. Stripes are always taken in ascending
+ * order, so two baskets that share products cannot deadlock.
+ */
+class StockLocks {
+    private final ReentrantLock[] stripes;
+    private final int[] allStripes;
+
+    StockLocks(int stripeCount) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        allStripes = IntStream.range(0, stripeCount).toArray();
+    }
+
+    /** Runs {@code section} holding the product's stripe. */
+    <T> T withLock(int productId, Supplier<T> section) {
+        return withStripes(new int[] {stripeOf(productId)}, section);
+    }
+
+    /** Runs {@code section} holding the stripes of every product in {@code productIds}. */
+    <T> T withLocks(Collection<Integer> productIds, Supplier<T> section) {
+        int[] order = new int[productIds.size()];
+        int i = 0;
+        for (int productId : productIds) {
+            order[i++] = stripeOf(productId);
+        }
+        Arrays.sort(order);
+        return withStripes(order, section);
+    }
+
+    /** Runs {@code section} holding every stripe, for changes to the catalog itself; no stock change can run meanwhile. */
+    <T> T withAllLocks(Supplier<T> section) {
+        return withStripes(allStripes, section);
+    }
+
+    void withAllLocks(Runnable section) {
+        withStripes(allStripes, () -> {
+            section.run();
+            return null;
+        });
+    }
+
+    // Ids are mostly consecutive, so the low bits alone spread them evenly
+    static int stripeOf(int productId, int stripeCount) {
+        return productId & (stripeCount - 1);
+    }
+
+    private int stripeOf(int productId) {
+        return stripeOf(productId, stripes.length);
+    }
+
+    // Products that share a stripe appear next to each other and take it once
+    private <T> T withStripes(int[] ascending, Supplier<T> section) {
+        ReentrantLock[] locks = new ReentrantLock[ascending.length];
+        int taken = 0;
+        try {
+            for (int i = 0; i < ascending.length; i++) {
+                if (i > 0 && ascending[i] == ascending[i - 1]) continue;
+
+                ReentrantLock stripe = stripes[ascending[i]];
+                stripe.lock();
+                locks[taken++] = stripe;
+            }
+            return section.get();
+        } finally {
+            while (taken > 0) {
+                locks[--taken].unlock();
+            }
+        }
+    }
+}
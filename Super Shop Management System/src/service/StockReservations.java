@@ -0,0 +1,239 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Soft holds on stock, placed when a product goes into a cart and dropped
+ * after a fixed time to live unless the cart refreshes or sells them. Holds
+ * are filed in a timer wheel: one bucket per one-second tick, with one turn of
+ * the wheel longer than the time to live, so every hold in the bucket of the
+ * tick that just passed is due. Placing, refreshing and expiring a hold each
+ * cost O(1), however many there are. The wheel only moves when it is used;
+ * nothing runs in the background.
+ * <p>
+ * The holds themselves are kept in stripes by product, split the same way as
+ * {@link StockLocks}, so carts holding different products do not wait for
+ * each other. Only the wheel is shared, and its lock is held just long enough
+ * to file a hold or take the due ones off.
+ */
+class StockReservations {
+    private static final long TICK_MILLIS = 1000;
+
+    private static final class Hold {
+        private final String holder;
+        private final int productId;
+        private int quantity;   // guarded by the product's stripe
+        private long deadline;  // tick at which the hold expires; written under both the stripe and the wheel
+        private boolean linked; // the rest is guarded by the wheel
+        private Hold previous;
+        private Hold next;
+
+        private Hold(String holder, int productId) {
+            this.holder = holder;
+            this.productId = productId;
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<Integer, Map<String, Hold>> holdsByProduct = new HashMap<>();
+        private final Map<Integer, Integer> reservedByProduct = new HashMap<>();
+    }
+
+    private final LongSupplier clock;
+    private final long ttlTicks;
+    private final Stripe[] stripes;
+    private final ConcurrentMap<String, Set<Integer>> productsByHolder = new ConcurrentHashMap<>();
+    private final Object wheelLock = new Object();
+    private final Hold[] wheel;
+    private long currentTick;
+
+    StockReservations(long ttlMillis, int stripeCount, LongSupplier clock) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Reservation time to live must be positive");
+        }
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        this.clock = clock;
+        this.ttlTicks = Math.max(1, (ttlMillis + TICK_MILLIS - 1) / TICK_MILLIS);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.wheel = new Hold[Math.toIntExact(Long.highestOneBit(ttlTicks) << 1)];
+        this.currentTick = clock.getAsLong() / TICK_MILLIS;
+    }
+
+    /** Sets the holder's hold on the product to {@code quantity} and restarts its time to live. */
+    void hold(String holder, int productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Reserved quantity must be positive");
+        }
+        advance();
+        Stripe stripe = stripeOf(productId);
+        synchronized (stripe) {
+            Hold hold = stripe.holdsByProduct.computeIfAbsent(productId, id -> new HashMap<>())
+                    .computeIfAbsent(holder, key -> new Hold(holder, productId));
+            if (hold.quantity == 0) {
+                productsByHolder.compute(holder, (key, productIds) -> {
+                    Set<Integer> held = productIds != null ? productIds : ConcurrentHashMap.newKeySet();
+                    held.add(productId);
+                    return held;
+                });
+            }
+            stripe.reservedByProduct.merge(productId, quantity - hold.quantity, Integer::sum);
+            hold.quantity = quantity;
+            synchronized (wheelLock) {
+                if (hold.linked) {
+                    unlink(hold);
+                }
+                hold.deadline = currentTick + ttlTicks;
+                link(hold);
+            }
+        }
+    }
+
+    void release(String holder, int productId) {
+        advance();
+        Stripe stripe = stripeOf(productId);
+        synchronized (stripe) {
+            Hold hold = find(stripe, holder, productId);
+            if (hold != null) {
+                synchronized (wheelLock) {
+                    if (hold.linked) {
+                        unlink(hold);
+                    }
+                }
+                drop(stripe, hold);
+            }
+        }
+    }
+
+    void releaseAll(String holder) {
+        Set<Integer> productIds = productsByHolder.get(holder);
+        if (productIds == null) return;
+
+        for (int productId : productIds.toArray(new Integer[0])) {
+            release(holder, productId);
+        }
+    }
+
+    /** Units of the product held by anyone. */
+    int reserved(int productId) {
+        advance();
+        Stripe stripe = stripeOf(productId);
+        synchronized (stripe) {
+            return stripe.reservedByProduct.getOrDefault(productId, 0);
+        }
+    }
+
+    /** Units of the product held by anyone but {@code holder}. */
+    int reservedByOthers(String holder, int productId) {
+        advance();
+        Stripe stripe = stripeOf(productId);
+        synchronized (stripe) {
+            Hold own = find(stripe, holder, productId);
+            return stripe.reservedByProduct.getOrDefault(productId, 0) - (own != null ? own.quantity : 0);
+        }
+    }
+
+    // Takes the holds of every tick that has passed off the wheel, then drops them under their own stripes
+    private void advance() {
+        long now = clock.getAsLong() / TICK_MILLIS;
+        List<Hold> due = new ArrayList<>();
+        synchronized (wheelLock) {
+            if (currentTick >= now) return;
+
+            if (now - currentTick >= wheel.length) {
+                // Idle for a whole turn: every hold is due, whatever bucket it is in
+                for (int bucket = 0; bucket < wheel.length; bucket++) {
+                    takeBucket(bucket, due);
+                }
+                currentTick = now;
+            } else {
+                while (currentTick < now) {
+                    currentTick++;
+                    takeBucket(bucketOf(currentTick), due);
+                }
+            }
+        }
+
+        for (Hold hold : due) {
+            Stripe stripe = stripeOf(hold.productId);
+            synchronized (stripe) {
+                // Skips holds refreshed or released since they came off the wheel
+                if (hold.quantity > 0 && hold.deadline <= now) {
+                    drop(stripe, hold);
+                }
+            }
+        }
+    }
+
+    private void takeBucket(int bucket, List<Hold> due) {
+        for (Hold hold = wheel[bucket]; hold != null; hold = hold.next) {
+            hold.linked = false;
+            due.add(hold);
+        }
+        wheel[bucket] = null;
+    }
+
+    private Hold find(Stripe stripe, String holder, int productId) {
+        Map<String, Hold> holds = stripe.holdsByProduct.get(productId);
+        return holds != null ? holds.get(holder) : null;
+    }
+
+    private void drop(Stripe stripe, Hold hold) {
+        Map<String, Hold> holds = stripe.holdsByProduct.get(hold.productId);
+        holds.remove(hold.holder);
+        if (holds.isEmpty()) {
+            stripe.holdsByProduct.remove(hold.productId);
+        }
+        stripe.reservedByProduct.computeIfPresent(hold.productId,
+                (id, reserved) -> reserved == hold.quantity ? null : reserved - hold.quantity);
+        hold.quantity = 0;
+        productsByHolder.computeIfPresent(hold.holder, (holder, productIds) -> {
+            productIds.remove(hold.productId);
+            return productIds.isEmpty() ? null : productIds;
+        });
+    }
+
+    private void link(Hold hold) {
+        int bucket = bucketOf(hold.deadline);
+        hold.linked = true;
+        hold.previous = null;
+        hold.next = wheel[bucket];
+        if (hold.next != null) {
+            hold.next.previous = hold;
+        }
+        wheel[bucket] = hold;
+    }
+
+    private void unlink(Hold hold) {
+        if (hold.previous != null) {
+            hold.previous.next = hold.next;
+        } else {
+            wheel[bucketOf(hold.deadline)] = hold.next;
+        }
+        if (hold.next != null) {
+            hold.next.previous = hold.previous;
+        }
+        hold.linked = false;
+        hold.previous = null;
+        hold.next = null;
+    }
+
+    private Stripe stripeOf(int productId) {
+        return stripes[StockLocks.stripeOf(productId, stripes.length)];
+    }
+
+    private int bucketOf(long tick) {
+        return (int) (tick & (wheel.length - 1));
+    }
+}
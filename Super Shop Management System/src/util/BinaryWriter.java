@@ -0,0 +1,105 @@
+package util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the compact binary format {@link BinaryReader} reads. Integers are
+ * zigzag varints (small magnitudes take one or two bytes), strings are a
+ * varint byte length followed by UTF-8, and a file starts with a four-byte
+ * magic number and a schema version. Output is staged in one reusable buffer.
+ */
+public final class BinaryWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryWriter(OutputStream out) {
+        this(out, BUFFER_SIZE);
+    }
+
+    /** For short records, where a full-size buffer would cost more than the data. */
+    public BinaryWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 16)];
+    }
+
+    public void writeHeader(int magic, int version) throws IOException {
+        ensureRoom(4);
+        buffer[position++] = (byte) (magic >>> 24);
+        buffer[position++] = (byte) (magic >>> 16);
+        buffer[position++] = (byte) (magic >>> 8);
+        buffer[position++] = (byte) magic;
+        writeVarInt(version);
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensureRoom(1);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeVarInt(int value) throws IOException {
+        writeVarLong(value);
+    }
+
+    public void writeVarLong(long value) throws IOException {
+        ensureRoom(10);
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        buffer[position++] = (byte) zigzag;
+    }
+
+    public void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.length - position < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for comma-separated records (RFC 4180: fields containing
+ * commas, quotes or line breaks are quoted, and quotes inside are doubled).
+ * The input is scanned once, character by character, into one reusable buffer;
+ * fields are only turned into strings when asked for, and numbers are parsed
+ * straight from the buffer.
+ */
+public final class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int bufferPosition;
+    private int bufferLimit;
+
+    private char[] record = new char[256];
+    private int recordLength;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+    private long lineNumber;
+    private long recordLineNumber;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /** Splits a single line into its fields. */
+    public static String[] parseLine(String line) {
+        try (CsvReader reader = new CsvReader(new StringReader(line))) {
+            if (!reader.next()) return new String[0];
+
+            String[] fields = new String[reader.fieldCount()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = reader.field(i);
+            }
+            return fields;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the next record. Blank lines are skipped.
+     *
+     * @return false at the end of the input
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            recordLength = 0;
+            fieldCount = 0;
+            recordLineNumber = lineNumber + 1;
+
+            int c = read();
+            if (c < 0) return false;
+            if (c == '\r' || c == '\n') {
+                consumeLineEnd(c);
+                continue;
+            }
+            readRecord(c);
+            return true;
+        }
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /** Line number the current record started on, counting from 1. */
+    public long lineNumber() {
+        return recordLineNumber;
+    }
+
+    public String field(int index) {
+        checkIndex(index);
+        return new String(record, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    public boolean fieldEquals(int index, String value) {
+        checkIndex(index);
+        int length = fieldEnds[index] - fieldStarts[index];
+        if (length != value.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if (record[fieldStarts[index] + i] != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public int intField(int index) {
+        long value = longField(index);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of range in field " + (index + 1) + ": " + field(index));
+        }
+        return (int) value;
+    }
+
+    public long longField(int index) {
+        checkIndex(index);
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        while (start < end && record[start] == ' ') start++;
+        while (end > start && record[end - 1] == ' ') end--;
+
+        boolean negative = start < end && record[start] == '-';
+        int position = negative || (start < end && record[start] == '+') ? start + 1 : start;
+        if (position == end || end - position > 18) {
+            return Long.parseLong(field(index).trim());
+        }
+
+        long value = 0;
+        for (; position < end; position++) {
+            char c = record[position];
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Not a number in field " + (index + 1) + ": " + field(index));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    public float floatField(int index) {
+        return Float.parseFloat(field(index).trim());
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readRecord(int c) throws IOException {
+        int fieldStart = 0;
+        boolean quoted = false;
+        boolean afterQuote = false;
+
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLineNumber);
+                }
+                if (c == '"') {
+                    int peek = read();
+                    if (peek == '"') {
+                        append('"');
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                        c = peek;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') lineNumber++;
+                    append((char) c);
+                }
+            } else if (c == ',' || c == '\r' || c == '\n' || c < 0) {
+                endField(fieldStart);
+                if (c != ',') {
+                    if (c >= 0) consumeLineEnd(c);
+                    return;
+                }
+                fieldStart = recordLength;
+                afterQuote = false;
+            } else if (c == '"' && recordLength == fieldStart && !afterQuote) {
+                quoted = true;
+            } else {
+                append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private void endField(int fieldStart) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount << 1);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount << 1);
+        }
+        fieldStarts[fieldCount] = fieldStart;
+        fieldEnds[fieldCount] = recordLength;
+        fieldCount++;
+    }
+
+    private void consumeLineEnd(int c) throws IOException {
+        lineNumber++;
+        if (c == '\r') {
+            int peek = read();
+            if (peek != '\n' && peek >= 0) bufferPosition--;
+        }
+    }
+
+    private void append(char c) {
+        if (recordLength == record.length) {
+            record = Arrays.copyOf(record, recordLength << 1);
+        }
+        record[recordLength++] = c;
+    }
+
+    private int read() throws IOException {
+        if (bufferPosition == bufferLimit) {
+            bufferLimit = in.read(buffer, 0, buffer.length);
+            bufferPosition = 0;
+            if (bufferLimit <= 0) {
+                bufferLimit = 0;
+                return -1;
+            }
+        }
+        return buffer[bufferPosition++];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IllegalArgumentException("Record on line " + recordLineNumber + " has no field " + (index + 1));
+        }
+    }
+}
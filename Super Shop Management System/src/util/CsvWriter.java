@@ -0,0 +1,134 @@
+package util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes comma-separated records in the format {@link CsvReader} reads. Fields
+ * are quoted only when they contain a comma, quote or line break, and numbers
+ * are appended without going through {@code String.format}.
+ */
+public final class CsvWriter implements Closeable, Flushable {
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private final Appendable out;
+    private boolean firstField = true;
+
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    public CsvWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    /** Joins the fields into one line, without a line break. */
+    public static String line(String... fields) {
+        StringBuilder sb = new StringBuilder(fields.length * 12);
+        CsvWriter writer = new CsvWriter(sb);
+        for (String field : fields) {
+            writer.field(field);
+        }
+        return sb.toString();
+    }
+
+    public CsvWriter field(String value) {
+        try {
+            separate();
+            if (value == null) return this;
+            if (!needsQuotes(value)) {
+                out.append(value);
+                return this;
+            }
+
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') out.append('"');
+                out.append(c);
+            }
+            out.append('"');
+            return this;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public CsvWriter field(long value) {
+        try {
+            separate();
+            appendLong(value);
+            return this;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public CsvWriter field(boolean value) {
+        return field(value ? "true" : "false");
+    }
+
+    /** Writes {@code value} rounded to {@code decimals} places (at most 6), like {@code %.2f}. */
+    public CsvWriter field(double value, int decimals) {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Unsupported number of decimals: " + decimals);
+        }
+        try {
+            separate();
+            long scale = POWERS_OF_TEN[decimals];
+            long scaled = Math.round(Math.abs(value) * scale);
+            if (value < 0 && scaled != 0) out.append('-');
+            appendLong(scaled / scale);
+            if (decimals > 0) {
+                out.append('.');
+                String fraction = Long.toString(scaled % scale);
+                for (int i = fraction.length(); i < decimals; i++) {
+                    out.append('0');
+                }
+                out.append(fraction);
+            }
+            return this;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void endRecord() throws IOException {
+        out.append('\n');
+        firstField = true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out instanceof Flushable flushable) flushable.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out instanceof Closeable closeable) closeable.close();
+    }
+
+    private void separate() throws IOException {
+        if (!firstField) out.append(',');
+        firstField = false;
+    }
+
+    private void appendLong(long value) throws IOException {
+        if (out instanceof StringBuilder sb) {
+            sb.append(value);
+        } else {
+            out.append(Long.toString(value));
+        }
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,188 @@
+package service;
+
+import model.Money;
+import model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedProductStoreTest {
+    // Layout of catalog.map, as written by MappedProductStore
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 48;
+
+    @TempDir
+    Path dataDir;
+
+    private MappedProductStore store;
+
+    @AfterEach
+    void closeStore() throws IOException {
+        if (store != null) store.close();
+    }
+
+    private MappedProductStore reopen() throws IOException {
+        if (store != null) store.close();
+        store = new MappedProductStore(dataDir);
+        store.open();
+        return store;
+    }
+
+    private static Product product(int id, String name, int quantity) {
+        return new Product(id, 1, name, Money.ofMinor(100L * id), quantity, new Date(1_700_000_000_000L + id));
+    }
+
+    private static Map<Integer, String> namesById(List<Product> products) {
+        return products.stream().collect(Collectors.toMap(Product::getId, Product::getName));
+    }
+
+    @Test
+    void keepsEveryChangeAcrossReopening() throws IOException {
+        store = new MappedProductStore(dataDir);
+        assertTrue(store.open());
+        store.recordPut(product(1, "Milk", 5));
+        store.recordPut(product(2, "Bread", 3));
+        store.recordPut(product(3, "Eggs", 12));
+        store.recordQuantity(1, 9);
+        store.recordQuantities(Map.of(2, 1, 3, 0));
+        store.recordPrice(2, Money.ofMinor(250));
+        store.recordPut(product(3, "Free-range eggs", 0));
+        store.recordDelete(1);
+
+        reopen();
+        assertEquals(Map.of(2, "Bread", 3, "Free-range eggs"), namesById(store.load()));
+        assertNull(store.read(1));
+        Product bread = store.read(2);
+        assertEquals(1, bread.getQuantity());
+        assertEquals(250, bread.getPriceMinor());
+        assertEquals(new Date(1_700_000_000_002L), bread.getDateAdded());
+    }
+
+    @Test
+    void indexesRecordsTheIdTableMissedBeforeACrash() throws IOException {
+        reopen();
+        store.recordPut(product(1, "Milk", 5));
+        store.recordPut(product(2, "Bread", 3));
+        store.close();
+        Path backup = Files.copy(dataDir.resolve("catalog.ids"), dataDir.resolve("ids.backup"));
+
+        reopen();
+        store.recordPut(product(3, "Eggs", 12));
+        store.recordPut(product(4, "Tea", 7));
+        store.close();
+        // As if the id table's last pages never reached the disk
+        Files.move(backup, dataDir.resolve("catalog.ids"), StandardCopyOption.REPLACE_EXISTING);
+
+        reopen();
+        assertEquals("Eggs", store.read(3).getName());
+        assertEquals("Tea", store.read(4).getName());
+        assertEquals(4, store.load().size());
+    }
+
+    @Test
+    void ignoresAnIdEntryLeftByAnInterruptedDelete() throws IOException {
+        reopen();
+        store.recordPut(product(1, "Milk", 5));
+        store.recordPut(product(2, "Bread", 3));
+        store.close();
+        Path backup = Files.copy(dataDir.resolve("catalog.ids"), dataDir.resolve("ids.backup"));
+
+        reopen();
+        store.recordDelete(2);
+        store.close();
+        // The record was marked deleted but its id entry was not removed
+        Files.move(backup, dataDir.resolve("catalog.ids"), StandardCopyOption.REPLACE_EXISTING);
+
+        reopen();
+        assertFalse(store.contains(2));
+        assertNull(store.read(2));
+        assertEquals(Map.of(1, "Milk"), namesById(store.load()));
+
+        assertTrue(store.recordPut(product(2, "Rye bread", 4)));
+        assertEquals("Rye bread", store.read(2).getName());
+        assertEquals(2, store.load().size());
+    }
+
+    @Test
+    void ignoresARecordWrittenPastTheRecordCount() throws IOException {
+        reopen();
+        store.recordPut(product(1, "Milk", 5));
+        store.recordPut(product(2, "Bread", 3));
+        store.close();
+        // A crash after the third record was written but before the count covered it
+        try (FileChannel map = FileChannel.open(dataDir.resolve("catalog.map"), StandardOpenOption.WRITE)) {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            record.put(0, (byte) 1).putInt(4, 99).putInt(8, 1).putInt(12, 1);
+            map.write(record, HEADER_BYTES + 2L * RECORD_BYTES);
+        }
+
+        reopen();
+        assertFalse(store.contains(99));
+        assertEquals(2, store.load().size());
+
+        store.recordPut(product(3, "Eggs", 12));
+        assertEquals("Eggs", store.read(3).getName());
+        assertFalse(store.contains(99));
+        assertEquals(3, store.load().size());
+    }
+
+    @Test
+    void compactsIntoTheNextGeneration() throws IOException {
+        reopen();
+        for (int id = 1; id <= 2100; id++) {
+            store.recordPut(product(id, "Product " + id, id % 10));
+        }
+        for (int id = 1; id <= 1600; id++) {
+            store.recordDelete(id);
+        }
+        assertTrue(store.needsCompaction());
+
+        store.compactIfNeeded(() -> fail("The store reads the catalog back itself"));
+        assertFalse(store.needsCompaction());
+        assertTrue(Files.exists(dataDir.resolve("catalog.names.2")));
+        assertFalse(Files.exists(dataDir.resolve("catalog.names.1")));
+        assertFalse(Files.exists(dataDir.resolve("catalog.map.tmp")));
+
+        store.recordPut(product(5000, "Added after compaction", 1));
+        reopen();
+        List<Product> products = store.load();
+        assertEquals(501, products.size());
+        assertEquals("Product 1601", products.get(0).getName());
+        assertEquals(1601 % 10, store.read(1601).getQuantity());
+        assertEquals("Added after compaction", store.read(5000).getName());
+        assertNull(store.read(1600));
+    }
+
+    @Test
+    void keepsTheOldGenerationWhenACompactionDidNotFinish() throws IOException {
+        reopen();
+        store.recordPut(product(1, "Milk", 5));
+        store.recordPut(product(2, "Bread", 3));
+        store.close();
+        // A crash before the new catalog.map was renamed into place
+        Files.write(dataDir.resolve("catalog.map.tmp"), new byte[] {1, 2, 3});
+        Files.write(dataDir.resolve("catalog.names.2"), new byte[] {4, 5, 6});
+
+        reopen();
+        assertEquals(Map.of(1, "Milk", 2, "Bread"), namesById(store.load()));
+
+        assertTrue(store.writeSnapshot(store.load()));
+        reopen();
+        assertEquals(Map.of(1, "Milk", 2, "Bread"), namesById(store.load()));
+        assertFalse(Files.exists(dataDir.resolve("catalog.names.1")));
+    }
+}
@@ -0,0 +1,134 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StockReservationsTest {
+    private static final long TTL_MILLIS = 15 * 60 * 1000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private StockReservations reservations(long ttlMillis) {
+        return new StockReservations(ttlMillis, 16, now::get);
+    }
+
+    @Test
+    void countsHoldsPerProductAndHolder() {
+        StockReservations reservations = reservations(TTL_MILLIS);
+        reservations.hold("A", 1, 3);
+        reservations.hold("B", 1, 2);
+        reservations.hold("A", 2, 5);
+
+        assertEquals(5, reservations.reserved(1));
+        assertEquals(2, reservations.reservedByOthers("A", 1));
+        assertEquals(3, reservations.reservedByOthers("B", 1));
+        assertEquals(5, reservations.reserved(2));
+
+        reservations.hold("A", 1, 1);
+        assertEquals(3, reservations.reserved(1));
+    }
+
+    @Test
+    void holdExpiresAfterTimeToLive() {
+        StockReservations reservations = reservations(TTL_MILLIS);
+        reservations.hold("A", 1, 3);
+
+        now.addAndGet(TTL_MILLIS - 1000);
+        assertEquals(3, reservations.reserved(1));
+        now.addAndGet(1000);
+        assertEquals(0, reservations.reserved(1));
+    }
+
+    @Test
+    void refreshingRestartsTimeToLive() {
+        StockReservations reservations = reservations(TTL_MILLIS);
+        reservations.hold("A", 1, 3);
+        reservations.hold("B", 1, 2);
+
+        now.addAndGet(10 * 60 * 1000);
+        reservations.hold("B", 1, 4);
+        now.addAndGet(5 * 60 * 1000);
+        assertEquals(4, reservations.reserved(1));
+
+        now.addAndGet(10 * 60 * 1000 - 1000);
+        assertEquals(4, reservations.reserved(1));
+        now.addAndGet(1000);
+        assertEquals(0, reservations.reserved(1));
+    }
+
+    @Test
+    void expiresOnTimeAcrossManyTurnsOfTheWheel() {
+        // Three ticks to live on a wheel of four buckets, so it wraps every four seconds
+        StockReservations reservations = reservations(3000);
+        List<Integer> placed = new ArrayList<>();
+        for (int second = 0; second < 40; second++) {
+            reservations.hold("A", second, second + 1);
+            placed.add(second);
+            now.addAndGet(1000);
+
+            for (int productId : placed) {
+                int expected = second - productId < 2 ? productId + 1 : 0;
+                assertEquals(expected, reservations.reserved(productId), "product " + productId + " at second " + second);
+            }
+        }
+    }
+
+    @Test
+    void idleForAWholeTurnExpiresEverything() {
+        StockReservations reservations = reservations(3000);
+        reservations.hold("A", 1, 2);
+        now.addAndGet(1000);
+        reservations.hold("B", 2, 2);
+
+        now.addAndGet(60 * 60 * 1000);
+        assertEquals(0, reservations.reserved(1));
+        assertEquals(0, reservations.reserved(2));
+
+        reservations.hold("A", 1, 2);
+        assertEquals(2, reservations.reserved(1));
+    }
+
+    @Test
+    void releasesOneProductOrEverythingAHolderHas() {
+        StockReservations reservations = reservations(TTL_MILLIS);
+        reservations.hold("C", 7, 1);
+        reservations.hold("C", 8, 1);
+        reservations.hold("D", 8, 2);
+
+        reservations.release("C", 7);
+        assertEquals(0, reservations.reserved(7));
+        assertEquals(3, reservations.reserved(8));
+
+        reservations.releaseAll("C");
+        assertEquals(2, reservations.reserved(8));
+        assertEquals(0, reservations.reservedByOthers("D", 8));
+    }
+
+    @Test
+    void holdersOnDifferentProductsDoNotInterfere() throws InterruptedException {
+        StockReservations reservations = reservations(TTL_MILLIS);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int productId = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    reservations.hold("cart" + productId, productId, i % 5 + 1);
+                    if (i % 3 == 0) reservations.releaseAll("cart" + productId);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int productId = 0; productId < threads.length; productId++) {
+            assertEquals(10_000 % 5 + 1, reservations.reserved(productId));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvReaderTest {
+    // Hands out one character per read, so every line end and quote lands on a buffer boundary
+    private static final class OneCharReader extends Reader {
+        private final Reader in;
+
+        OneCharReader(String text) {
+            this.in = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return in.read(buffer, offset, Math.min(length, 1));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static List<String[]> readAll(Reader in) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(in)) {
+            while (reader.next()) {
+                String[] fields = new String[reader.fieldCount()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = reader.field(i);
+                }
+                records.add(fields);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    void readsQuotedCommasAndLineBreaks() throws IOException {
+        List<String[]> records = readAll(new StringReader("1,\"Milk, 1L\",\"two\nlines\"\n2,Bread,plain\n"));
+
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] {"1", "Milk, 1L", "two\nlines"}, records.get(0));
+        assertArrayEquals(new String[] {"2", "Bread", "plain"}, records.get(1));
+    }
+
+    @Test
+    void undoublesQuotesInsideQuotedFields() throws IOException {
+        List<String[]> records = readAll(new StringReader("\"5\"\" screen\",\"\"\"quoted\"\"\",\"\"\n"));
+
+        assertArrayEquals(new String[] {"5\" screen", "\"quoted\"", ""}, records.get(0));
+    }
+
+    @Test
+    void handlesCrlfSplitAcrossReads() throws IOException {
+        String text = "1,\"a\r\nb\",c\r\n\r\n2,d,\"e\"\r\n3,f,g";
+
+        List<String[]> records = readAll(new OneCharReader(text));
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[] {"1", "a\r\nb", "c"}, records.get(0));
+        assertArrayEquals(new String[] {"2", "d", "e"}, records.get(1));
+        assertArrayEquals(new String[] {"3", "f", "g"}, records.get(2));
+    }
+
+    @Test
+    void handlesCrlfOnTheInternalBufferBoundary() throws IOException {
+        // The first line ends with its \r as the last character of the 64 KiB buffer
+        String first = "x".repeat((1 << 16) - 1);
+        List<String[]> records = readAll(new StringReader(first + "\r\nnext,line\r\n"));
+
+        assertEquals(2, records.size());
+        assertEquals(first, records.get(0)[0]);
+        assertArrayEquals(new String[] {"next", "line"}, records.get(1));
+    }
+
+    @Test
+    void countsLinesInsideQuotedFields() throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader("a,\"b\nc\"\n\nd\n"))) {
+            reader.next();
+            assertEquals(1, reader.lineNumber());
+            reader.next();
+            assertEquals(4, reader.lineNumber());
+        }
+    }
+
+    @Test
+    void rejectsUnterminatedQuotedField() {
+        assertThrows(IOException.class, () -> readAll(new StringReader("1,\"never closed\n2,x\n")));
+    }
+
+    @Test
+    void parsesNumbersStraightFromTheRecord() throws IOException {
+        try (CsvReader reader = new CsvReader(new StringReader(" 42 ,-7,+3,abc\n"))) {
+            reader.next();
+            assertEquals(42, reader.intField(0));
+            assertEquals(-7, reader.longField(1));
+            assertEquals(3, reader.intField(2));
+            assertThrows(NumberFormatException.class, () -> reader.intField(3));
+        }
+    }
+}